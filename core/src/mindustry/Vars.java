@@ -238,7 +238,7 @@ public class Vars implements Loadable{
         pathfinder = new Pathfinder();
 
         entities = new Entities();
-        playerGroup = entities.add(Player.class).enableMapping();
+        playerGroup = entities.add(Player.class).enableMapping().enableTeamIndex();
         tileGroup = entities.add(TileEntity.class, false);
         bulletGroup = entities.add(Bullet.class).enableMapping();
         effectGroup = entities.add(EffectEntity.class, false);
@@ -246,7 +246,7 @@ public class Vars implements Loadable{
         puddleGroup = entities.add(Puddle.class).enableMapping();
         shieldGroup = entities.add(ShieldEntity.class, false);
         fireGroup = entities.add(Fire.class).enableMapping();
-        unitGroup = entities.add(BaseUnit.class).enableMapping();
+        unitGroup = entities.add(BaseUnit.class).enableMapping().enableTeamIndex();
 
         for(EntityGroup<?> group : entities.all()){
             group.setRemoveListener(entity -> {
@@ -7,6 +7,7 @@ import arc.math.geom.*;
 import arc.struct.*;
 import arc.util.*;
 import mindustry.content.*;
+import mindustry.core.World.*;
 import mindustry.entities.type.*;
 import mindustry.game.EventType.*;
 import mindustry.game.*;
@@ -19,7 +20,7 @@ import static mindustry.Vars.*;
 
 /** Class used for indexing special target blocks for AI. */
 @SuppressWarnings("unchecked")
-public class BlockIndexer{
+public class BlockIndexer implements TileIndexer{
     /** Size of one quadrant. */
     private final static int quadrantSize = 16;
 
@@ -28,8 +29,12 @@ public class BlockIndexer{
     private final ObjectSet<Item> itemSet = new ObjectSet<>();
     /** Stores all ore quadtrants on the map. */
     private ObjectMap<Item, ObjectSet<Tile>> ores = new ObjectMap<>();
-    /** Maps each team ID to a quarant. A quadrant is a grid of bits, where each bit is set if and only if there is a block of that team in that quadrant. */
-    private GridBits[] structQuadrants;
+    /** Maps each team ID to a grid of quadrants. Each quadrant holds the buildings of that team whose center is inside it, or null if it never had any. */
+    private Array<TileEntity>[][] buildingQuadrants;
+    /** Maps tile positions to the building that was indexed there. */
+    private IntMap<TileEntity> indexedBuildings = new IntMap<>();
+    /** Maps tile positions to the team ID their building was indexed under. */
+    private IntIntMap indexedTeams = new IntIntMap();
     /** Stores all damaged tile entities by team. */
     private ObjectSet<Tile>[] damagedTiles = new ObjectSet[Team.all().length];
     /**All ores available on this map.*/
@@ -58,76 +63,58 @@ public class BlockIndexer{
             updateQuadrant(event.tile);
         });
 
-        Events.on(WorldLoadEvent.class, event -> {
-            scanOres.clear();
-            scanOres.addAll(Item.getAllOres());
-            damagedTiles = new ObjectSet[Team.all().length];
-            flagMap = new ObjectSet[Team.all().length][BlockFlag.all.length];
-
-            for(int i = 0; i < flagMap.length; i++){
-                for(int j = 0; j < BlockFlag.all.length; j++){
-                    flagMap[i][j] = new ObjectSet<>();
-                }
-            }
+        world.addIndexer(this);
+    }
 
-            typeMap.clear();
-            allOres.clear();
-            ores = null;
+    @Override
+    public void beginIndex(){
+        scanOres.clear();
+        scanOres.addAll(Item.getAllOres());
+        damagedTiles = new ObjectSet[Team.all().length];
+        flagMap = new ObjectSet[Team.all().length][BlockFlag.all.length];
 
-            //create bitset for each team type that contains each quadrant
-            structQuadrants = new GridBits[Team.all().length];
+        for(int i = 0; i < flagMap.length; i++){
+            for(int j = 0; j < BlockFlag.all.length; j++){
+                flagMap[i][j] = new ObjectSet<>();
+            }
+        }
 
-            for(int x = 0; x < world.width(); x++){
-                for(int y = 0; y < world.height(); y++){
-                    Tile tile = world.tile(x, y);
+        typeMap.clear();
+        allOres.clear();
+        ores = null;
 
-                    process(tile);
+        //create building quadrants for each team as needed
+        buildingQuadrants = new Array[Team.all().length][];
+        indexedBuildings.clear();
+        indexedTeams.clear();
+    }
 
-                    if(tile.entity != null && tile.entity.damaged()){
-                        notifyTileDamaged(tile.entity);
-                    }
+    @Override
+    public void index(Tile tile){
+        process(tile);
+        updateQuadrant(tile);
 
-                    if(tile.drop() != null) allOres.add(tile.drop());
-                }
-            }
+        if(tile.entity != null && tile.entity.damaged()){
+            notifyTileDamaged(tile.entity);
+        }
 
-            for(int x = 0; x < quadWidth(); x++){
-                for(int y = 0; y < quadHeight(); y++){
-                    updateQuadrant(world.tile(x * quadrantSize, y * quadrantSize));
-                }
-            }
+        if(tile.drop() != null) allOres.add(tile.drop());
+    }
 
-            scanOres();
-        });
+    @Override
+    public void endIndex(){
+        scanOres();
     }
 
     private ObjectSet<Tile>[] getFlagged(Team team){
         return flagMap[team.id];
     }
 
-    private GridBits structQuadrant(Team t){
-        int id = Pack.u(t.id);
-        if(structQuadrants[id] == null){
-            structQuadrants[id] = new GridBits(Mathf.ceil(world.width() / (float)quadrantSize), Mathf.ceil(world.height() / (float)quadrantSize));
-        }
-        return structQuadrants[id];
-    }
-
-    /** Updates all the structure quadrants for a newly activated team. */
-    public void updateTeamIndex(Team team){
-        if(structQuadrants == null) return;
-
-        //go through every tile... ouch
-        for(int x = 0; x < world.width(); x++){
-            for(int y = 0; y < world.height(); y++){
-                Tile tile = world.tile(x, y);
-                if(tile.getTeam() == team){
-                    int quadrantX = tile.x / quadrantSize;
-                    int quadrantY = tile.y / quadrantSize;
-                    structQuadrant(team).set(quadrantX, quadrantY);
-                }
-            }
-        }
+    /** @return the quadrant containing this building's center. */
+    private int quadrant(TileEntity entity){
+        int quadrantX = Mathf.clamp((int)(entity.x / tilesize) / quadrantSize, 0, quadWidth() - 1);
+        int quadrantY = Mathf.clamp((int)(entity.y / tilesize) / quadrantSize, 0, quadHeight() - 1);
+        return quadrantX + quadrantY * quadWidth();
     }
 
     /** @return whether this item is present on this map.*/
@@ -205,6 +192,9 @@ public class BlockIndexer{
     }
 
     public TileEntity findTile(Team team, float x, float y, float range, Boolf<Tile> pred, boolean usePriority){
+        if(buildingQuadrants == null || buildingQuadrants[Pack.u(team.id)] == null) return null;
+
+        Array<TileEntity>[] quadrants = buildingQuadrants[Pack.u(team.id)];
         TileEntity closest = null;
         float dst = 0;
         float range2 = range*range;
@@ -212,28 +202,25 @@ public class BlockIndexer{
         for(int rx = Math.max((int)((x - range) / tilesize / quadrantSize), 0); rx <= (int)((x + range) / tilesize / quadrantSize) && rx < quadWidth(); rx++){
             for(int ry = Math.max((int)((y - range) / tilesize / quadrantSize), 0); ry <= (int)((y + range) / tilesize / quadrantSize) && ry < quadHeight(); ry++){
 
-                if(!getQuad(team, rx, ry)) continue;
-
-                for(int tx = rx * quadrantSize; tx < (rx + 1) * quadrantSize && tx < world.width(); tx++){
-                    for(int ty = ry * quadrantSize; ty < (ry + 1) * quadrantSize && ty < world.height(); ty++){
-                        Tile other = world.ltile(tx, ty);
-
-                        if(other == null) continue;
-
-                        if(other.entity == null || other.getTeam() != team || !pred.get(other) || !other.block().targetable)
-                            continue;
-
-                        TileEntity e = other.entity;
-
-                        float ndst = Mathf.dst2(x, y, e.x, e.y);
-                        if(ndst < range2 && (closest == null ||
-                                //this one is closer, and it is at least of equal priority
-                                (ndst < dst && (!usePriority || closest.block.priority.ordinal() <= e.block.priority.ordinal())) ||
-                                //priority is used, and new block has higher priority regardless of range
-                                (usePriority && closest.block.priority.ordinal() < e.block.priority.ordinal()))){
-                            dst = ndst;
-                            closest = e;
-                        }
+                Array<TileEntity> buildings = quadrants[rx + ry * quadWidth()];
+                if(buildings == null) continue;
+
+                for(int i = 0; i < buildings.size; i++){
+                    TileEntity e = buildings.get(i);
+                    Tile other = e.tile;
+
+                    //the index is only updated once the change event arrives, so skip anything that was replaced since
+                    if(other.entity != e || other.getTeam() != team || !pred.get(other) || !other.block().targetable)
+                        continue;
+
+                    float ndst = Mathf.dst2(x, y, e.x, e.y);
+                    if(ndst < range2 && (closest == null ||
+                            //this one is closer, and it is at least of equal priority
+                            (ndst < dst && (!usePriority || closest.block.priority.ordinal() <= e.block.priority.ordinal())) ||
+                            //priority is used, and new block has higher priority regardless of range
+                            (usePriority && closest.block.priority.ordinal() < e.block.priority.ordinal()))){
+                        dst = ndst;
+                        closest = e;
                     }
                 }
             }
@@ -317,40 +304,34 @@ public class BlockIndexer{
         }
     }
 
+    /** Moves the building at this tile into the quadrant of its current team, removing whatever was indexed there before. */
     private void updateQuadrant(Tile tile){
-        if(structQuadrants == null) return;
+        if(buildingQuadrants == null) return;
 
-        //this quadrant is now 'dirty', re-scan the whole thing
-        int quadrantX = tile.x / quadrantSize;
-        int quadrantY = tile.y / quadrantSize;
-
-        for(Team team : activeTeams){
-            GridBits bits = structQuadrant(team);
+        int pos = tile.pos();
+        TileEntity previous = indexedBuildings.remove(pos);
+        if(previous != null){
+            Array<TileEntity> buildings = buildingQuadrants[indexedTeams.remove(pos, 0)][quadrant(previous)];
+            buildings.remove(previous, true);
+        }
 
-            //fast-set this quadrant to 'occupied' if the tile just placed is already of this team
-            if(tile.getTeam() == team && tile.entity != null && tile.block().targetable){
-                bits.set(quadrantX, quadrantY);
-                continue; //no need to process futher
-            }
+        //only building centers are indexed; parts of multiblocks have no entity
+        TileEntity entity = tile.entity;
+        if(entity == null || tile.block() instanceof BlockPart) return;
 
-            bits.set(quadrantX, quadrantY, false);
+        int team = Pack.u(tile.getTeamID());
+        if(buildingQuadrants[team] == null){
+            buildingQuadrants[team] = new Array[quadWidth() * quadHeight()];
+        }
 
-            outer:
-            for(int x = quadrantX * quadrantSize; x < world.width() && x < (quadrantX + 1) * quadrantSize; x++){
-                for(int y = quadrantY * quadrantSize; y < world.height() && y < (quadrantY + 1) * quadrantSize; y++){
-                    Tile result = world.ltile(x, y);
-                    //when a targetable block is found, mark this quadrant as occupied and stop searching
-                    if(result.entity != null && result.getTeam() == team){
-                        bits.set(quadrantX, quadrantY);
-                        break outer;
-                    }
-                }
-            }
+        int quadrant = quadrant(entity);
+        if(buildingQuadrants[team][quadrant] == null){
+            buildingQuadrants[team][quadrant] = new Array<>(false, 16);
         }
-    }
 
-    private boolean getQuad(Team team, int quadrantX, int quadrantY){
-        return structQuadrant(team).get(quadrantX, quadrantY);
+        buildingQuadrants[team][quadrant].add(entity);
+        indexedBuildings.put(pos, entity);
+        indexedTeams.put(pos, team);
     }
 
     private int quadWidth(){
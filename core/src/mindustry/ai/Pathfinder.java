@@ -8,22 +8,29 @@ import arc.math.geom.*;
 import arc.util.*;
 import arc.util.ArcAnnotate.*;
 import arc.util.async.*;
+import mindustry.core.World.*;
 import mindustry.game.EventType.*;
 import mindustry.game.*;
 import mindustry.gen.*;
+import mindustry.net.Administration.*;
 import mindustry.world.*;
 import mindustry.world.meta.*;
 
+import java.util.*;
+import java.util.concurrent.*;
+
 import static mindustry.Vars.*;
 
-public class Pathfinder implements Runnable{
+public class Pathfinder implements Runnable, TileIndexer{
     private static final long maxUpdate = Time.millisToNanos(4);
     private static final int updateFPS = 60;
     private static final int updateInterval = 1000 / updateFPS;
     private static final int impassable = -1;
 
-    /** tile data, see PathTileStruct */
-    private int[][] tiles;
+    /** tile data, see PathTileStruct. Indexed as x + y * width. */
+    private int[] tiles = {};
+    /** size of the tile grid */
+    private int width, height;
     /** unordered array of path data for iteration only. DO NOT iterate ot access this in the main thread.*/
     private Array<PathData> list = new Array<>();
     /** Maps teams + flags to a valid path to get to that flag for that team. */
@@ -34,68 +41,112 @@ public class Pathfinder implements Runnable{
     private TaskQueue queue = new TaskQueue();
     /** current pathfinding thread */
     private @Nullable Thread thread;
+    /** worker pool for updating flow fields in parallel; null if parallel updates are disabled */
+    private @Nullable ExecutorService executor;
+    /** amount of threads in the worker pool */
+    private int threads = 1;
+    /** temporary array for comparing path targets. Main thread only. */
+    private IntArray targetBuffer = new IntArray();
 
     public Pathfinder(){
-        Events.on(WorldLoadEvent.class, event -> {
-            stop();
-
-            //reset and update internal tile array
-            tiles = new int[world.width()][world.height()];
-            pathMap = new PathData[Team.all().length][PathTarget.all.length];
-            created = new GridBits(Team.all().length, PathTarget.all.length);
-            list = new Array<>();
-
-            for(int x = 0; x < world.width(); x++){
-                for(int y = 0; y < world.height(); y++){
-                    tiles[x][y] = packTile(world.rawTile(x, y));
-                }
-            }
-
-            //special preset which may help speed things up; this is optional
-            preloadPath(state.rules.waveTeam, PathTarget.enemyCores);
-
-            start();
-        });
+        world.addIndexer(this);
 
         Events.on(ResetEvent.class, event -> stop());
 
         Events.on(TileChangeEvent.class, event -> updateTile(event.tile));
     }
 
+    @Override
+    public void beginIndex(){
+        stop();
+
+        //reset and update internal tile array
+        width = world.width();
+        height = world.height();
+        tiles = new int[width * height];
+        pathMap = new PathData[Team.all().length][PathTarget.all.length];
+        created = new GridBits(Team.all().length, PathTarget.all.length);
+        list = new Array<>();
+    }
+
+    @Override
+    public void index(Tile tile){
+        tiles[tile.x + tile.y * width] = packTile(tile);
+    }
+
+    @Override
+    public void endIndex(){
+        //special preset which may help speed things up; this is optional
+        preloadPath(state.rules.waveTeam, PathTarget.enemyCores);
+
+        start();
+    }
+
     /** Packs a tile into its internal representation. */
     private int packTile(Tile tile){
         return PathTile.get(tile.cost, tile.getTeamID(), (byte)0, !tile.solid() && tile.floor().drownTime <= 0f);
     }
 
-    /** Starts or restarts the pathfinding thread. */
+    /** Starts or restarts the pathfinding thread, along with its worker pool if parallel updates are enabled. */
     private void start(){
         stop();
+
+        threads = Math.max(Config.pathfinderThreads.num(), 1);
+        if(threads > 1){
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread worker = new Thread(r, "Pathfinder Worker");
+                worker.setDaemon(true);
+                return worker;
+            });
+        }
+
         thread = Threads.daemon(this);
     }
 
-    /** Stops the pathfinding thread. */
+    /** Stops the pathfinding thread and its worker pool. */
     private void stop(){
         if(thread != null){
             thread.interrupt();
             thread = null;
         }
+        if(executor != null){
+            executor.shutdownNow();
+            executor = null;
+        }
         queue.clear();
     }
 
+    /** @return the time in nanoseconds the last update of this flow field took, or -1 if it doesn't exist. */
+    public long updateTime(Team team, PathTarget target){
+        PathData data = pathMap[team.id][target.ordinal()];
+        return data == null ? -1 : data.updateTime;
+    }
+
     public int debugValue(Team team, int x, int y){
         if(pathMap[team.id][PathTarget.enemyCores.ordinal()] == null) return 0;
-        return pathMap[team.id][PathTarget.enemyCores.ordinal()].weights[x][y];
+        return pathMap[team.id][PathTarget.enemyCores.ordinal()].weights[x + y * width];
     }
 
-    /** Update a tile in the internal pathfinding grid. Causes a complete pathfinding reclaculation. */
+    /**
+     * Update a tile in the internal pathfinding grid.
+     * Only weights affected by the changed tiles are recalculated, unless the targets of a path have changed.
+     */
     public void updateTile(Tile tile){
         if(net.client()) return;
 
         int x = tile.x, y = tile.y;
+        //pairs of tile indices and their previous packed tile
+        IntArray changed = new IntArray();
 
         tile.getLinkedTiles(t -> {
-            if(Structs.inBounds(t.x, t.y, tiles)){
-                tiles[t.x][t.y] = packTile(t);
+            if(Structs.inBounds(t.x, t.y, width, height)){
+                int index = t.x + t.y * width;
+                int packed = packTile(t);
+                if(packed != tiles[index]){
+                    changed.add(index);
+                    changed.add(tiles[index]);
+                    tiles[index] = packed;
+                }
             }
         });
 
@@ -103,9 +154,15 @@ public class Pathfinder implements Runnable{
         for(PathData[] arr : pathMap){
             for(PathData path : arr){
                 if(path != null){
+                    targetBuffer.clear();
+                    path.target.getTargets(path.team, targetBuffer);
+
                     synchronized(path.targets){
-                        path.targets.clear();
-                        path.target.getTargets(path.team, path.targets);
+                        if(!targetBuffer.equals(path.targets)){
+                            path.targets.clear();
+                            path.targets.addAll(targetBuffer);
+                            path.targetsChanged = true;
+                        }
                     }
                 }
             }
@@ -113,7 +170,19 @@ public class Pathfinder implements Runnable{
 
         queue.post(() -> {
             for(PathData data : list){
-                updateTargets(data, x, y);
+                boolean retarget;
+                synchronized(data.targets){
+                    retarget = data.targetsChanged;
+                    data.targetsChanged = false;
+                }
+
+                if(retarget){
+                    updateTargets(data, x, y);
+                }else{
+                    for(int i = 0; i < changed.size; i += 2){
+                        repairTile(data, changed.get(i), changed.get(i + 1));
+                    }
+                }
             }
         });
     }
@@ -121,15 +190,38 @@ public class Pathfinder implements Runnable{
     /** Thread implementation. */
     @Override
     public void run(){
+        //each pathfinding thread has its own tasks, since an old thread may still be finishing an update while a new one starts
+        ArrayList<Callable<Object>> tasks = new ArrayList<>();
+
         while(true){
             if(net.client()) return;
             try{
 
                 queue.run();
 
-                //total update time no longer than maxUpdate
-                for(PathData data : list){
-                    updateFrontier(data, maxUpdate / list.size);
+                ExecutorService executor = this.executor;
+
+                if(executor != null && list.size > 1){
+                    //each worker gets the same share of the time budget; fields are never updated by two workers at once
+                    long budget = Math.min(maxUpdate, maxUpdate * threads / list.size);
+                    tasks.clear();
+                    for(PathData data : list){
+                        data.budget = budget;
+                        tasks.add(data.task);
+                    }
+
+                    //tile data written before queue.post() is visible here, and invokeAll() publishes it to the workers
+                    try{
+                        executor.invokeAll(tasks);
+                    }catch(InterruptedException | RejectedExecutionException e){
+                        //the pool was shut down, stop looping
+                        return;
+                    }
+                }else{
+                    //total update time no longer than maxUpdate
+                    for(PathData data : list){
+                        updateField(data, maxUpdate / list.size);
+                    }
                 }
 
                 try{
@@ -161,8 +253,8 @@ public class Pathfinder implements Runnable{
             return tile;
         }
 
-        int[][] values = data.weights;
-        int value = values[tile.x][tile.y];
+        int[] values = data.weights;
+        int value = values[tile.x + tile.y * width];
 
         Tile current = null;
         int tl = 0;
@@ -172,10 +264,12 @@ public class Pathfinder implements Runnable{
             Tile other = world.tile(dx, dy);
             if(other == null) continue;
 
-            if(values[dx][dy] < value && (current == null || values[dx][dy] < tl) && !other.solid() && other.floor().drownTime <= 0 &&
+            int otherValue = values[dx + dy * width];
+
+            if(otherValue < value && (current == null || otherValue < tl) && !other.solid() && other.floor().drownTime <= 0 &&
             !(point.x != 0 && point.y != 0 && (world.solid(tile.x + point.x, tile.y) || world.solid(tile.x, tile.y + point.y)))){ //diagonal corner trap
                 current = other;
-                tl = values[dx][dy];
+                tl = otherValue;
             }
         }
 
@@ -184,10 +278,15 @@ public class Pathfinder implements Runnable{
         return current;
     }
 
-    /** @return whether a tile can be passed through by this team. Pathfinding thread only.*/
-    private boolean passable(int x, int y, Team team){
-        int tile = tiles[x][y];
-        return PathTile.passable(tile) || (PathTile.team(tile) != team.id && PathTile.team(tile) != (int)Team.derelict.id);
+    /** @return whether a tile index can be passed through by this team. Pathfinding thread only.*/
+    private boolean passable(int index, Team team){
+        return cost(tiles[index], team) != impassable;
+    }
+
+    /** @return the cost of passing through a packed tile for a team, or impassable. Pathfinding thread only. */
+    private int cost(int tile, Team team){
+        boolean passable = PathTile.passable(tile) || (PathTile.team(tile) != team.id && PathTile.team(tile) != (int)Team.derelict.id);
+        return passable ? PathTile.cost(tile) : impassable;
     }
 
     /**
@@ -195,19 +294,12 @@ public class Pathfinder implements Runnable{
      * This only occurs for active teams.
      */
     private void updateTargets(PathData path, int x, int y){
-        if(!Structs.inBounds(x, y, path.weights)) return;
-
-        if(path.weights[x][y] == 0){
-            //this was a previous target
-            path.frontier.clear();
-        }else if(!path.frontier.isEmpty()){
-            //skip if this path is processing
-            return;
-        }
+        if(!Structs.inBounds(x, y, width, height)) return;
 
         //assign impassability to the tile
-        if(!passable(x, y, path.team)){
-            path.weights[x][y] = impassable;
+        int index = x + y * width;
+        if(!passable(index, path.team)){
+            path.weights[index] = impassable;
         }
 
         //increment search, clear frontier
@@ -218,15 +310,88 @@ public class Pathfinder implements Runnable{
             //add targets
             for(int i = 0; i < path.targets.size; i++){
                 int pos = path.targets.get(i);
-                int tx = Pos.x(pos), ty = Pos.y(pos);
+                int target = Pos.x(pos) + Pos.y(pos) * width;
+
+                path.weights[target] = 0;
+                path.searches[target] = (short)path.search;
+                path.frontier.addFirst(target);
+            }
+        }
+    }
+
+    /**
+     * Repairs the weights of a path after a single tile has changed its cost.
+     * If the tile got cheaper, only that tile is re-opened. If it got more expensive, every tile whose weight
+     * may have been derived from it is invalidated. The frontier is then seeded with the valid tiles around the invalidated region.
+     * Pathfinding thread only.
+     */
+    private void repairTile(PathData path, int index, int previous){
+        if(path.weights[index] == 0) return;
+
+        int oldCost = cost(previous, path.team), newCost = cost(tiles[index], path.team);
+        if(oldCost == newCost) return;
+
+        int[] weights = path.weights;
+        short[] searches = path.searches;
+        path.invalid.clear();
+
+        if(newCost == impassable || (oldCost != impassable && newCost > oldCost)){
+            //weights can only go up; invalidate all tiles that may have used this one as their best path
+            IntQueue dirty = path.dirty;
+            dirty.clear();
+
+            int weight = weights[index];
+            boolean valid = weight != impassable && searches[index] == path.search;
+            invalidate(path, index);
+
+            if(valid){
+                dirty.addFirst(index);
+                dirty.addFirst(weight);
+            }
+
+            while(dirty.size > 0){
+                int current = dirty.removeLast(), currentWeight = dirty.removeLast();
+                int cx = current % width, cy = current / width;
+
+                for(Point2 point : Geometry.d4){
+                    int dx = cx + point.x, dy = cy + point.y;
+                    if(!Structs.inBounds(dx, dy, width, height)) continue;
+
+                    int other = dx + dy * width, otherWeight = weights[other];
+                    if(otherWeight != impassable && otherWeight != 0 && searches[other] == path.search && otherWeight == currentWeight + PathTile.cost(tiles[other])){
+                        invalidate(path, other);
+                        dirty.addFirst(other);
+                        dirty.addFirst(otherWeight);
+                    }
+                }
+            }
+        }else{
+            //weights can only go down; re-open this tile and let the decrease spread outwards
+            invalidate(path, index);
+        }
+
+        //re-propagate from the valid border of the invalidated region
+        for(int i = 0; i < path.invalid.size; i++){
+            int invalid = path.invalid.get(i);
+            int ix = invalid % width, iy = invalid / width;
 
-                path.weights[tx][ty] = 0;
-                path.searches[tx][ty] = (short)path.search;
-                path.frontier.addFirst(pos);
+            for(Point2 point : Geometry.d4){
+                int dx = ix + point.x, dy = iy + point.y;
+                int other = dx + dy * width;
+                if(Structs.inBounds(dx, dy, width, height) && weights[other] != impassable && searches[other] == path.search){
+                    path.frontier.addFirst(other);
+                }
             }
         }
     }
 
+    /** Marks a tile index as impassable and outdated, so the next search that reaches it overwrites its weight. */
+    private void invalidate(PathData path, int index){
+        path.weights[index] = impassable;
+        path.searches[index] = (short)(path.search - 1);
+        path.invalid.add(index);
+    }
+
     private void preloadPath(Team team, PathTarget target){
         updateFrontier(createPath(team, target, target.getTargets(team, new IntArray())), -1);
     }
@@ -234,7 +399,7 @@ public class Pathfinder implements Runnable{
     /** Created a new flowfield that aims to get to a certain target for a certain team.
      * Pathfinding thread only. */
     private PathData createPath(Team team, PathTarget target, IntArray targets){
-        PathData path = new PathData(team, target, world.width(), world.height());
+        PathData path = new PathData(team, target, width, height);
 
         list.add(path);
         pathMap[team.id][target.ordinal()] = path;
@@ -246,48 +411,58 @@ public class Pathfinder implements Runnable{
         }
 
         //fill with impassables by default
-        for(int x = 0; x < world.width(); x++){
-            for(int y = 0; y < world.height(); y++){
-                path.weights[x][y] = impassable;
-            }
-        }
+        Arrays.fill(path.weights, impassable);
 
         //add targets
         for(int i = 0; i < path.targets.size; i++){
             int pos = path.targets.get(i);
-            path.weights[Pos.x(pos)][Pos.y(pos)] = 0;
-            path.frontier.addFirst(pos);
+            int index = Pos.x(pos) + Pos.y(pos) * width;
+            path.weights[index] = 0;
+            path.frontier.addFirst(index);
         }
 
         return path;
     }
 
-    /** Update the frontier for a path. Pathfinding thread only. */
+    /** Updates the frontier of a path, recording how long it took. */
+    private void updateField(PathData path, long nsToRun){
+        long start = Time.nanos();
+        updateFrontier(path, nsToRun);
+        path.updateTime = Time.timeSinceNanos(start);
+    }
+
+    /** Update the frontier for a path. Pathfinding thread or a worker only. */
     private void updateFrontier(PathData path, long nsToRun){
         long start = Time.nanos();
+        int[] weights = path.weights;
+        short[] searches = path.searches;
 
         while(path.frontier.size > 0 && (nsToRun < 0 || Time.timeSinceNanos(start) <= nsToRun)){
-            Tile tile = world.tile(path.frontier.removeLast());
-            if(tile == null || path.weights == null) return; //something went horribly wrong, bail
-            int cost = path.weights[tile.x][tile.y];
+            int index = path.frontier.removeLast();
+            if(index < 0 || index >= tiles.length || weights.length != tiles.length) return; //something went horribly wrong, bail
+            int cost = weights[index];
 
             //pathfinding overflowed for some reason, time to bail. the next block update will handle this, hopefully
-            if(path.frontier.size >= world.width() * world.height()){
+            if(path.frontier.size >= tiles.length){
                 path.frontier.clear();
                 return;
             }
 
             if(cost != impassable){
+                int x = index % width, y = index / width;
+
                 for(Point2 point : Geometry.d4){
+                    int dx = x + point.x, dy = y + point.y;
+                    if(dx < 0 || dy < 0 || dx >= width || dy >= height) continue;
 
-                    int dx = tile.x + point.x, dy = tile.y + point.y;
-                    Tile other = world.tile(dx, dy);
+                    int other = dx + dy * width;
+                    int otherCost = PathTile.cost(tiles[other]);
 
-                    if(other != null && (path.weights[dx][dy] > cost + other.cost || path.searches[dx][dy] < path.search) && passable(dx, dy, path.team)){
-                        if(other.cost < 0) throw new IllegalArgumentException("Tile cost cannot be negative! " + other);
-                        path.frontier.addFirst(Pos.get(dx, dy));
-                        path.weights[dx][dy] = cost + other.cost;
-                        path.searches[dx][dy] = (short)path.search;
+                    if((weights[other] > cost + otherCost || searches[other] < path.search) && passable(other, path.team)){
+                        if(otherCost < 0) throw new IllegalArgumentException("Tile cost cannot be negative! " + world.tile(dx, dy));
+                        path.frontier.addFirst(other);
+                        weights[other] = cost + otherCost;
+                        searches[other] = (short)path.search;
                     }
                 }
             }
@@ -335,23 +510,38 @@ public class Pathfinder implements Runnable{
         final Team team;
         /** Flag that is being targeted. */
         final PathTarget target;
-        /** costs of getting to a specific tile */
-        final int[][] weights;
-        /** search IDs of each position - the highest, most recent search is prioritized and overwritten */
-        final short[][] searches;
-        /** search frontier, these are Pos objects */
+        /** costs of getting to a specific tile, indexed as x + y * width */
+        final int[] weights;
+        /** search IDs of each tile index - the highest, most recent search is prioritized and overwritten */
+        final short[] searches;
+        /** search frontier, these are tile indices */
         final IntQueue frontier = new IntQueue();
         /** all target positions; these positions have a cost of 0, and must be synchronized on! */
         final IntArray targets = new IntArray();
+        /** whether the targets have changed since the last search; synchronized on targets */
+        boolean targetsChanged;
+        /** tile indices invalidated by the last repair */
+        final IntArray invalid = new IntArray();
+        /** queue of tile indices and weights for invalidating tiles during repair */
+        final IntQueue dirty = new IntQueue();
         /** current search ID */
         int search = 1;
+        /** time budget in nanoseconds for the next parallel update */
+        long budget;
+        /** time in nanoseconds the last frontier update took */
+        volatile long updateTime;
+        /** task for updating this path on a worker */
+        final Callable<Object> task = () -> {
+            updateField(this, budget);
+            return null;
+        };
 
         PathData(Team team, PathTarget target, int width, int height){
             this.team = team;
             this.target = target;
 
-            this.weights = new int[width][height];
-            this.searches = new short[width][height];
+            this.weights = new int[width * height];
+            this.searches = new short[width * height];
             this.frontier.ensureCapacity((width + height) * 3);
         }
     }
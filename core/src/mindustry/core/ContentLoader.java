@@ -25,7 +25,8 @@ import static mindustry.Vars.mods;
 public class ContentLoader{
     private ObjectMap<String, MappableContent>[] contentNameMap = new ObjectMap[ContentType.values().length];
     private Array<Content>[] contentMap = new Array[ContentType.values().length];
-    private MappableContent[][] temporaryMapper;
+    /** Per thread, so map previews can be read in the background while the world loads on the main thread. */
+    private ThreadLocal<MappableContent[][]> temporaryMapper = new ThreadLocal<>();
     private @Nullable LoadedMod currentMod;
     private @Nullable Content lastAdded;
     private ObjectSet<Cons<Content>> initialization = new ObjectSet<>();
@@ -192,7 +193,7 @@ public class ContentLoader{
     }
 
     public void setTemporaryMapper(MappableContent[][] temporaryMapper){
-        this.temporaryMapper = temporaryMapper;
+        this.temporaryMapper.set(temporaryMapper);
     }
 
     public Array<Content>[] getContentMap(){
@@ -207,6 +208,7 @@ public class ContentLoader{
     }
 
     public <T extends Content> T getByID(ContentType type, int id){
+        MappableContent[][] temporaryMapper = this.temporaryMapper.get();
 
         if(temporaryMapper != null && temporaryMapper[type.ordinal()] != null && temporaryMapper[type.ordinal()].length != 0){
             //-1 = invalid content
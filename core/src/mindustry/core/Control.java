@@ -320,6 +320,7 @@ public class Control implements ApplicationListener, Loadable{
             state.rules.waveSpacing = 60f * 30;
             state.rules.buildCostMultiplier = 0.3f;
             state.rules.tutorial = true;
+            world.modified();
             Events.fire(Trigger.newGame);
         });
     }
@@ -12,10 +12,12 @@ import mindustry.game.EventType.*;
 import mindustry.game.*;
 import mindustry.game.Teams.*;
 import mindustry.gen.*;
+import mindustry.net.Administration.*;
 import mindustry.type.*;
 import mindustry.world.*;
 import mindustry.world.blocks.*;
 import mindustry.world.blocks.BuildBlock.*;
+import mindustry.world.blocks.power.*;
 
 import java.util.*;
 
@@ -30,6 +32,7 @@ import static mindustry.Vars.*;
  * This class should <i>not</i> call any outside methods to change state of modules, but instead fire events.
  */
 public class Logic implements ApplicationListener{
+    private final TileUpdater tileUpdater = new TileUpdater();
 
     public Logic(){
         Events.on(WaveEvent.class, event -> {
@@ -101,6 +104,8 @@ public class Logic implements ApplicationListener{
 
     public void play(){
         state.set(State.playing);
+        //rules are usually assigned right before this
+        world.modified();
         state.wavetime = state.rules.waveSpacing * 2; //grace period of 2x wave time before game starts
         Events.fire(new PlayEvent());
 
@@ -238,6 +243,10 @@ public class Logic implements ApplicationListener{
                     puddleGroup.update();
                     shieldGroup.update();
                     bulletGroup.update();
+                    if(Config.parallelBlockUpdates.bool()){
+                        tileUpdater.compute(tileGroup);
+                    }
+                    PowerGraph.incremental = Config.incrementalPower.bool();
                     tileGroup.update();
                     fireGroup.update();
                 }else{
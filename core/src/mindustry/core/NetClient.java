@@ -29,7 +29,6 @@ import mindustry.world.*;
 import mindustry.world.modules.*;
 
 import java.io.*;
-import java.util.zip.*;
 
 // custom
 import java.util.regex.Pattern;
@@ -128,7 +127,7 @@ public class NetClient implements ApplicationListener{
 
         net.handleClient(WorldStream.class, data -> {
             Log.info("Recieved world data: {0} bytes.", data.stream.available());
-            NetworkIO.loadWorld(new InflaterInputStream(data.stream));
+            NetworkIO.loadWorld(data.stream);
 
             finishConnecting();
         });
@@ -343,6 +342,7 @@ public class NetClient implements ApplicationListener{
     @Remote(variants = Variant.both)
     public static void onSetRules(Rules rules){
         state.rules = rules;
+        world.modified();
     }
 
     @Remote(variants = Variant.both)
@@ -429,7 +429,9 @@ public class NetClient implements ApplicationListener{
         }
     }
 
-    @Remote(variants = Variant.both, priority = PacketPriority.low, unreliable = true)
+    //reliable, since with delta block sync a lost snapshot would leave blocks stale until the next keyframe
+    //keyframes only correct client-side simulation drift
+    @Remote(variants = Variant.both, priority = PacketPriority.low)
     public static void onBlockSnapshot(short amount, short dataLen, byte[] data){
         try{
             netClient.byteStream.setBytes(net.decompressSnapshot(data, dataLen));
@@ -5,6 +5,7 @@ import arc.graphics.*;
 import arc.math.*;
 import arc.math.geom.*;
 import arc.struct.*;
+import arc.struct.IntSet.*;
 import arc.util.*;
 import arc.util.CommandHandler.*;
 import arc.util.io.*;
@@ -23,6 +24,7 @@ import mindustry.gen.*;
 import mindustry.net.*;
 import mindustry.net.Administration.*;
 import mindustry.net.Packets.*;
+import mindustry.net.Streamable.*;
 import mindustry.world.*;
 import mindustry.world.blocks.storage.CoreBlock.*;
 
@@ -35,10 +37,21 @@ import static arc.util.Log.*;
 import static mindustry.Vars.*;
 
 public class NetServer implements ApplicationListener{
-    private final static int maxSnapshotSize = 430, timerBlockSync = 0;
+    private final static int maxSnapshotSize = 430, timerBlockSync = 0, timerEntitySync = 1;
     private final static float serverSyncTime = 12, blockSyncTime = 60 * 8;
     private final static Vec2 vector = new Vec2();
     private final static Rect viewport = new Rect();
+    /** Padding around a player's view in world units, inside which entities are synced at full rate. */
+    private final static float interestPadding = tilesize * 12f;
+    /** With interest management enabled, every nth entity snapshot also contains entities outside the player's view. */
+    private final static int interestKeyframeInterval = 5;
+    /**
+     * With delta block sync enabled, every nth block snapshot contains all blocks.
+     * Snapshots are reliable, but clients also simulate blocks themselves, so blocks that stay unchanged on the server may still drift on the client.
+     */
+    private final static int blockKeyframeInterval = 4;
+    /** Maximum age of shared world data in ticks. Joining players get newer entity and block states through snapshots. */
+    private final static float worldDataLifetime = 60f * 2;
     /** If a player goes away of their server-side coordinates by this distance, they get teleported back. */
     private final static float correctDist = 16f;
 
@@ -65,7 +78,7 @@ public class NetServer implements ApplicationListener{
     };
 
     private boolean closing = false;
-    private Interval timer = new Interval();
+    private Interval timer = new Interval(2);
 
     private ByteBuffer writeBuffer = ByteBuffer.allocate(127);
     private ByteBufferOutput outputBuffer = new ByteBufferOutput(writeBuffer);
@@ -74,8 +87,45 @@ public class NetServer implements ApplicationListener{
     private ReusableByteOutStream syncStream = new ReusableByteOutStream();
     /** Data stream for writing player sync data to. */
     private DataOutputStream dataStream = new DataOutputStream(syncStream);
+    /** Stream for serializing all synced blocks once per block snapshot. */
+    private ReusableByteOutStream blockStream = new ReusableByteOutStream();
+    /** Data stream for writing block sync data to. */
+    private DataOutputStream blockData = new DataOutputStream(blockStream);
+    /** Tile positions, start offsets and data hashes of each block in {@link #blockStream}. */
+    private IntArray blockPositions = new IntArray(), blockOffsets = new IntArray(), blockHashes = new IntArray();
+    /** Stream holding the sync data of every entity serialized this tick. */
+    private ReusableByteOutStream entityCache = new ReusableByteOutStream();
+    /** Data stream for writing to the entity cache. */
+    private DataOutputStream entityCacheData = new DataOutputStream(entityCache);
+    /** Maps entity IDs to their index in the entity cache. */
+    private IntIntMap entityCacheIndex = new IntIntMap();
+    /** Start offsets and lengths of each entity's data in {@link #entityCache}. */
+    private IntArray entityCacheOffsets = new IntArray(), entityCacheLengths = new IntArray();
+    /** Compressed snapshot chunks with every entity of a group, mapped by group ID. Shared by all players during a sync tick. */
+    private IntMap<Array<EntitySnapshotChunk>> sharedChunks = new IntMap<>();
+    /** Entities inside the current player's view, used for interest management. */
+    private Array<Entity> interestEntities = new Array<>();
+    /** Amount of entities written into the current entity snapshot chunk. */
+    private int syncSent;
+    /** Compressed world data shared by all players joining before the world changes. Null if it has not been packed yet. */
+    private BlobOutputStream worldData;
+    /** World epoch that {@link #worldData} was packed at. */
+    private int worldDataEpoch;
+    /** Time in ticks that {@link #worldData} was packed at. */
+    private float worldDataTime;
+    /** Amount of times world data was reused or had to be packed. */
+    public int worldDataHits, worldDataMisses;
 
     public NetServer(){
+        //a block that was removed or replaced will never be sent with its old hash again, so forget it
+        Events.on(TileChangeEvent.class, event -> {
+            if(!net.server()) return;
+
+            int pos = event.tile.pos();
+            for(NetConnection con : net.getConnections()){
+                con.blockSyncHashes.remove(pos, 0);
+            }
+        });
 
         net.handleServer(Connect.class, (con, connect) -> {
             if(admins.isIPBanned(connect.addressTCP) || admins.isSubnetBanned(connect.addressTCP)){
@@ -159,7 +209,7 @@ public class NetServer implements ApplicationListener{
                 info.adminUsid = packet.usid;
                 info.lastName = packet.name;
                 info.id = packet.uuid;
-                admins.save();
+                admins.modified(info);
                 Call.onInfoMessage(con, "You are not whitelisted here.");
                 Log.info("&lcDo &lywhitelist-add {0}&lc to whitelist the player &lb'{1}'", packet.uuid, packet.name);
                 con.kick(KickReason.whitelist);
@@ -338,6 +388,7 @@ public class NetServer implements ApplicationListener{
                 if(votes >= votesRequired()){
                     Call.sendMessage(Strings.format("[orange]Vote passed.[scarlet] {0}[orange] will be banned from the server for {1} minutes.", target.name, (kickDuration/60)));
                     target.getInfo().lastKicked = Time.millis() + kickDuration*1000;
+                    admins.modified(target.getInfo());
                     playerGroup.all().each(p -> p.uuid != null && p.uuid.equals(target.uuid), p -> p.con.kick(KickReason.vote));
                     map[0] = null;
                     task.cancel();
@@ -464,15 +515,41 @@ public class NetServer implements ApplicationListener{
         return assigner.assign(current, players);
     }
 
+    /**
+     * Packs the world data sent to joining players, unless the last packed data is still valid.
+     * It stays valid until tiles or rules change, or for at most {@link #worldDataLifetime} ticks, since entities and block states change without modifying the world.
+     * Players receive those through regular snapshots after joining.
+     */
+    public void packWorldData(){
+        if(worldData == null || worldDataEpoch != world.epoch() || Time.time() - worldDataTime > worldDataLifetime){
+            worldData = new BlobOutputStream();
+            worldDataEpoch = world.epoch();
+            worldDataTime = Time.time();
+            worldDataMisses++;
+            NetworkIO.writeWorld(new FastDeflaterOutputStream(worldData));
+            Log.debug("Packed {0} compressed bytes of world data.", worldData.size());
+        }else{
+            worldDataHits++;
+        }
+    }
+
     public void sendWorldData(Player player){
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        DeflaterOutputStream def = new FastDeflaterOutputStream(stream);
-        NetworkIO.writeWorld(player, def);
+        packWorldData();
+
+        ByteArrayOutputStream playerData = new ByteArrayOutputStream(128);
+        NetworkIO.writePlayer(player, playerData);
+
+        //the shared world data is streamed directly from its buffer; it is never modified, only replaced
+        SegmentInputStream stream = new SegmentInputStream();
+        stream.add(playerData.toByteArray(), 0, playerData.size());
+        stream.add(worldData.data(), 0, worldData.size());
+
         WorldStream data = new WorldStream();
-        data.stream = new ByteArrayInputStream(stream.toByteArray());
+        data.stream = stream;
         player.con.sendStream(data);
-
-        Log.debug("Packed {0} compressed bytes of world data.", stream.size());
+        //the client's block state has been replaced, so the next block snapshot must be complete
+        player.con.blockSnapshots = 0;
+        player.con.blockSyncHashes.clear();
     }
 
     public static void onDisconnect(Player player, String reason){
@@ -662,8 +739,17 @@ public class NetServer implements ApplicationListener{
         return false;
     }
 
+    @Override
+    public void dispose(){
+        admins.dispose();
+    }
+
     @Override
     public void update(){
+        //don't hold on to world data that can't be reused anymore
+        if(worldData != null && Time.time() - worldDataTime > worldDataLifetime){
+            worldData = null;
+        }
 
         if(!headless && !closing && net.server() && state.is(State.menu)){
             closing = true;
@@ -700,32 +786,92 @@ public class NetServer implements ApplicationListener{
         }
     }
 
-    /** Sends a block snapshot to all players. */
+    /** Sends a block snapshot to all players. With delta block sync, each player only receives blocks that changed since their last snapshot. */
     public void writeBlockSnapshots() throws IOException{
-        syncStream.reset();
+        //serialize every synced block once, remembering where its data starts
+        blockStream.reset();
+        blockPositions.clear();
+        blockOffsets.clear();
+        blockHashes.clear();
 
-        short sent = 0;
         for(TileEntity entity : tileGroup.all()){
             if(!entity.block.sync) continue;
-            sent ++;
 
-            dataStream.writeInt(entity.tile.pos());
-            entity.write(dataStream);
+            int offset = blockStream.size();
+            blockData.writeInt(entity.tile.pos());
+            entity.write(blockData);
+
+            blockPositions.add(entity.tile.pos());
+            blockOffsets.add(offset);
+            blockHashes.add(hash(blockStream.getBytes(), offset, blockStream.size()));
+        }
+
+        if(blockPositions.isEmpty()) return;
+
+        blockOffsets.add(blockStream.size());
+
+        if(!Config.deltaBlockSync.bool()){
+            writeBlockSnapshot(null, true);
+            return;
+        }
+
+        for(int i = 0; i < playerGroup.size(); i++){
+            Player player = playerGroup.all().get(i);
+            if(player.isLocal || player.con == null || !player.con.hasConnected) continue;
+
+            NetConnection con = player.con;
+            boolean keyframe = con.blockSnapshots % blockKeyframeInterval == 0;
+            con.blockSnapshots ++;
+            writeBlockSnapshot(con, keyframe);
+        }
+    }
+
+    /** Writes the serialized blocks to a connection, or to everyone if the connection is null. Non-keyframes skip blocks that are unchanged since the last snapshot.*/
+    private void writeBlockSnapshot(NetConnection con, boolean keyframe) throws IOException{
+        syncStream.reset();
+
+        byte[] bytes = blockStream.getBytes();
+        short sent = 0;
+        for(int i = 0; i < blockPositions.size; i++){
+            int pos = blockPositions.get(i), hash = blockHashes.get(i);
+
+            if(con != null){
+                //the default value never equals the hash, so new positions are always sent
+                if(!keyframe && con.blockSyncHashes.get(pos, hash + 1) == hash) continue;
+                con.blockSyncHashes.put(pos, hash);
+            }
+
+            sent ++;
+            dataStream.write(bytes, blockOffsets.get(i), blockOffsets.get(i + 1) - blockOffsets.get(i));
 
             if(syncStream.size() > maxSnapshotSize){
-                dataStream.close();
-                byte[] stateBytes = syncStream.toByteArray();
-                Call.onBlockSnapshot(sent, (short)stateBytes.length, net.compressSnapshot(stateBytes));
+                flushBlockSnapshot(con, sent);
                 sent = 0;
                 syncStream.reset();
             }
         }
 
         if(sent > 0){
-            dataStream.close();
-            byte[] stateBytes = syncStream.toByteArray();
+            flushBlockSnapshot(con, sent);
+        }
+    }
+
+    private void flushBlockSnapshot(NetConnection con, short sent) throws IOException{
+        dataStream.close();
+        byte[] stateBytes = syncStream.toByteArray();
+        if(con == null){
             Call.onBlockSnapshot(sent, (short)stateBytes.length, net.compressSnapshot(stateBytes));
+        }else{
+            Call.onBlockSnapshot(con, sent, (short)stateBytes.length, net.compressSnapshot(stateBytes));
+        }
+    }
+
+    private static int hash(byte[] bytes, int from, int to){
+        int result = 1;
+        for(int i = from; i < to; i++){
+            result = 31 * result + bytes[i];
         }
+        return result;
     }
 
     public void writeEntitySnapshot(Player player) throws IOException{
@@ -745,7 +891,14 @@ public class NetServer implements ApplicationListener{
         //write basic state data.
         Call.onStateSnapshot(player.con, state.wavetime, state.wave, state.enemies, (short)stateBytes.length, net.compressSnapshot(stateBytes));
 
-        viewport.setSize(player.con.viewWidth, player.con.viewHeight).setCenter(player.con.viewX, player.con.viewY);
+        NetConnection con = player.con;
+        //with interest management, only every nth snapshot contains entities outside of the player's view
+        boolean interest = Config.syncInterest.bool();
+        boolean keyframe = !interest || con.entitySnapshots % interestKeyframeInterval == 0;
+        con.entitySnapshots ++;
+        con.nextSyncInterest.clear();
+
+        viewport.setSize(con.viewWidth + interestPadding * 2f, con.viewHeight + interestPadding * 2f).setCenter(con.viewX, con.viewY);
 
         //check for syncable groups
         for(EntityGroup<?> group : entities.all()){
@@ -756,39 +909,139 @@ public class NetServer implements ApplicationListener{
                 throw new RuntimeException("Entity group '" + group.getType() + "' contains SyncTrait entities, yet mapping is not enabled. In order for syncing to work, you must enable mapping for this group.");
             }
 
-            syncStream.reset();
+            if(keyframe){
+                if(interest){
+                    findInterest(group);
+                    for(Entity entity : interestEntities){
+                        if(entity.isAdded()){
+                            con.nextSyncInterest.add(entity.getID());
+                        }
+                    }
+                }
 
-            int sent = 0;
+                //complete snapshots are the same for every player, so they are only compressed once per tick
+                for(EntitySnapshotChunk chunk : sharedSnapshotChunks(group)){
+                    Call.onEntitySnapshot(con, (byte)group.getID(), chunk.amount, chunk.length, chunk.data);
+                }
+            }else{
+                syncStream.reset();
+                syncSent = 0;
+                findInterest(group);
 
-            for(Entity entity :  group.all()){
-                SyncTrait sync = (SyncTrait)entity;
-                if(!sync.isSyncing()) continue;
+                for(Entity entity : interestEntities){
+                    //the quadtree may still contain entities removed this frame
+                    if(!entity.isAdded() || !con.nextSyncInterest.add(entity.getID())) continue;
 
-                //write all entities now
-                dataStream.writeInt(entity.getID()); //write id
-                dataStream.writeByte(sync.getTypeID().id); //write type ID
-                sync.write(dataStream); //write entity
+                    writeSyncEntity(con, group, entity);
+                }
 
-                sent++;
+                //entities that left the view get one last update, so their final position is known
+                IntSetIterator it = con.syncInterest.iterator();
+                while(it.hasNext){
+                    int id = it.next();
+                    Entity entity = group.getByID(id);
+                    if(entity != null && !con.nextSyncInterest.contains(id)){
+                        writeSyncEntity(con, group, entity);
+                    }
+                }
 
-                if(syncStream.size() > maxSnapshotSize){
-                    dataStream.close();
-                    byte[] syncBytes = syncStream.toByteArray();
-                    Call.onEntitySnapshot(player.con, (byte)group.getID(), (short)sent, (short)syncBytes.length, net.compressSnapshot(syncBytes));
-                    sent = 0;
-                    syncStream.reset();
+                if(syncSent > 0){
+                    flushEntitySnapshot(con, group);
                 }
             }
+        }
+
+        IntSet last = con.syncInterest;
+        con.syncInterest = con.nextSyncInterest;
+        con.nextSyncInterest = last;
+    }
 
-            if(sent > 0){
-                dataStream.close();
+    /**
+     * Collects the entities of a group inside the current viewport into interestEntities.
+     * Keyframes and regular snapshots both use this, so entities at the edge of the view are not included by one and dropped by the other.
+     */
+    private void findInterest(EntityGroup<?> group){
+        interestEntities.clear();
 
-                byte[] syncBytes = syncStream.toByteArray();
-                Call.onEntitySnapshot(player.con, (byte)group.getID(), (short)sent, (short)syncBytes.length, net.compressSnapshot(syncBytes));
+        //only solid entities are inserted into group quadtrees, and they are matched by their hitbox
+        if(group.useTree() && group.all().get(0) instanceof SolidTrait){
+            group.intersect(viewport.x, viewport.y, viewport.width, viewport.height, interestEntities::add);
+        }else{
+            for(Entity entity : group.all()){
+                if(viewport.contains(entity.getX(), entity.getY())){
+                    interestEntities.add(entity);
+                }
             }
         }
     }
 
+    /** @return the compressed snapshot chunks containing every entity of this group, which are shared by all players this tick. */
+    private Array<EntitySnapshotChunk> sharedSnapshotChunks(EntityGroup<?> group) throws IOException{
+        Array<EntitySnapshotChunk> chunks = sharedChunks.get(group.getID());
+        if(chunks != null) return chunks;
+
+        sharedChunks.put(group.getID(), chunks = new Array<>());
+        syncStream.reset();
+        syncSent = 0;
+
+        for(Entity entity : group.all()){
+            writeSyncEntity(null, group, entity);
+        }
+
+        if(syncSent > 0){
+            flushEntitySnapshot(null, group);
+        }
+
+        return chunks;
+    }
+
+    /** Copies the sync data of an entity into the current snapshot chunk. Each entity is only serialized once per tick. */
+    private void writeSyncEntity(NetConnection con, EntityGroup<?> group, Entity entity) throws IOException{
+        SyncTrait sync = (SyncTrait)entity;
+        if(!sync.isSyncing()) return;
+
+        int index = entityCacheIndex.get(entity.getID(), -1);
+        if(index == -1){
+            index = entityCacheOffsets.size;
+            entityCacheOffsets.add(entityCache.size());
+            entityCacheData.writeInt(entity.getID()); //write id
+            entityCacheData.writeByte(sync.getTypeID().id); //write type ID
+            sync.write(entityCacheData); //write entity
+            entityCacheLengths.add(entityCache.size() - entityCacheOffsets.get(index));
+            entityCacheIndex.put(entity.getID(), index);
+        }
+
+        dataStream.write(entityCache.getBytes(), entityCacheOffsets.get(index), entityCacheLengths.get(index));
+
+        syncSent++;
+
+        if(syncStream.size() > maxSnapshotSize){
+            flushEntitySnapshot(con, group);
+            syncStream.reset();
+        }
+    }
+
+    /** Sends the current snapshot chunk to a connection, or adds it to the shared chunks of the group if the connection is null. */
+    private void flushEntitySnapshot(NetConnection con, EntityGroup<?> group) throws IOException{
+        dataStream.close();
+        byte[] syncBytes = syncStream.toByteArray();
+        if(con == null){
+            sharedChunks.get(group.getID()).add(new EntitySnapshotChunk((short)syncSent, (short)syncBytes.length, net.compressSnapshot(syncBytes)));
+        }else{
+            Call.onEntitySnapshot(con, (byte)group.getID(), (short)syncSent, (short)syncBytes.length, net.compressSnapshot(syncBytes));
+        }
+        syncSent = 0;
+    }
+
+    /** Clears all entity data cached during the last sync tick. */
+    private void resetSnapshotCache(){
+        entityCache.reset();
+        entityCacheIndex.clear();
+        entityCacheOffsets.clear();
+        entityCacheLengths.clear();
+        sharedChunks.clear();
+    }
+
     String fixName(String name){
         name = name.trim();
         if(name.equals("[") || name.equals("]")){
@@ -842,6 +1095,12 @@ public class NetServer implements ApplicationListener{
     void sync(){
 
         try{
+            //all players are synced on the same tick, so that entity data can be shared between them
+            boolean entitySync = timer.get(timerEntitySync, serverSyncTime);
+            if(entitySync){
+                resetSnapshotCache();
+            }
+
             //iterate through each player
             for(int i = 0; i < playerGroup.size(); i++){
                 Player player = playerGroup.all().get(i);
@@ -854,7 +1113,7 @@ public class NetServer implements ApplicationListener{
 
                 NetConnection connection = player.con;
 
-                if(!player.timer.get(Player.timerSync, serverSyncTime) || !connection.hasConnected) continue;
+                if(!entitySync || !connection.hasConnected) continue;
 
                 writeEntitySnapshot(player);
             }
@@ -868,6 +1127,24 @@ public class NetServer implements ApplicationListener{
         }
     }
 
+    private static class EntitySnapshotChunk{
+        final short amount, length;
+        final byte[] data;
+
+        EntitySnapshotChunk(short amount, short length, byte[] data){
+            this.amount = amount;
+            this.length = length;
+            this.data = data;
+        }
+    }
+
+    /** Byte stream that exposes its buffer, so its contents can be sent without copying them. */
+    private static class BlobOutputStream extends ByteArrayOutputStream{
+        byte[] data(){
+            return buf;
+        }
+    }
+
     public interface TeamAssigner{
         Team assign(Player player, Iterable<Player> players);
     }
@@ -28,11 +28,33 @@ public class World{
     private Tile[][] tiles;
 
     private boolean generating, invalidMap;
+    /** Incremented whenever the world may have changed. */
+    private int epoch;
+    /** Indices rebuilt from the pass over all tiles at the end of map loading. */
+    private Array<TileIndexer> indexers = new Array<>();
 
     public World(){
 
     }
 
+    /**
+     * @return a number that changes whenever tiles or the rules may have changed, or a map was loaded. Used to tell whether data derived from the world is outdated.
+     * Entities and block states change every update without modifying the world.
+     */
+    public int epoch(){
+        return epoch;
+    }
+
+    /** Registers an index to be rebuilt from the pass over all tiles at the end of every map load, instead of scanning the map itself. */
+    public void addIndexer(TileIndexer indexer){
+        indexers.add(indexer);
+    }
+
+    /** Signals that the world may have changed, outdating any data derived from it. */
+    public void modified(){
+        epoch++;
+    }
+
     public boolean isInvalidMap(){
         return invalidMap;
     }
@@ -164,6 +186,11 @@ public class World{
     public void endMapLoad(){
         prepareTiles(tiles);
 
+        for(TileIndexer indexer : indexers){
+            indexer.beginIndex();
+        }
+
+        //occlusion only depends on neighboring blocks, which are all set at this point, so indexers may use it right away
         for(int x = 0; x < tiles.length; x++){
             for(int y = 0; y < tiles[0].length; y++){
                 Tile tile = tiles[x][y];
@@ -172,9 +199,17 @@ public class World{
                 if(tile.entity != null){
                     tile.entity.updateProximity();
                 }
+
+                for(int i = 0; i < indexers.size; i++){
+                    indexers.get(i).index(tile);
+                }
             }
         }
 
+        for(TileIndexer indexer : indexers){
+            indexer.endIndex();
+        }
+
         if(!headless){
             addDarkness(tiles);
         }
@@ -182,6 +217,7 @@ public class World{
         entities.all().each(group -> group.resize(-finalWorldBounds, -finalWorldBounds, tiles.length * tilesize + finalWorldBounds * 2, tiles[0].length * tilesize + finalWorldBounds * 2));
 
         generating = false;
+        modified();
         Events.fire(new WorldLoadEvent());
     }
 
@@ -260,6 +296,7 @@ public class World{
 
     public void notifyChanged(Tile tile){
         if(!generating){
+            modified();
             Core.app.post(() -> Events.fire(new TileChangeEvent(tile)));
         }
     }
@@ -406,6 +443,18 @@ public class World{
         boolean accept(int x, int y);
     }
 
+    /** An index of tiles that is rebuilt in one shared pass over the map after it is loaded. All methods are called before the WorldLoadEvent. */
+    public interface TileIndexer{
+        /** Called before any tile is indexed. The world has its final size. */
+        void beginIndex();
+
+        /** Called once for every tile, after its occlusion and proximity are updated. */
+        void index(Tile tile);
+
+        /** Called after every tile was indexed. */
+        void endIndex();
+    }
+
     private class Context implements WorldContext{
         @Override
         public Tile tile(int x, int y){
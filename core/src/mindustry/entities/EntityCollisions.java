@@ -120,6 +120,10 @@ public class EntityCollisions{
                 tree.insert(s);
             }
         }
+
+        if(group.teamIndexEnabled()){
+            group.teamIndex().rebuild(group.all());
+        }
     }
 
     private static boolean solid(int x, int y){
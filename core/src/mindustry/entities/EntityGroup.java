@@ -24,6 +24,7 @@ public class EntityGroup<T extends Entity> implements Iterable<T>{
     private final Rect intersectRect = new Rect();
     private IntMap<T> map;
     private QuadTree tree;
+    private TeamIndex<T> teamIndex;
     private Cons<T> removeListener;
     private Cons<T> addListener;
 
@@ -101,6 +102,22 @@ public class EntityGroup<T extends Entity> implements Iterable<T>{
         return map != null;
     }
 
+    /** Enables a per-team spatial index of this group, which is rebuilt alongside the quadtree. Entities must be solid and have a team. */
+    public EntityGroup<T> enableTeamIndex(){
+        if(!useTree) throw new RuntimeException("Team indexing requires quadtrees to be enabled for group " + id + "!");
+        teamIndex = new TeamIndex<>();
+        return this;
+    }
+
+    public boolean teamIndexEnabled(){
+        return teamIndex != null;
+    }
+
+    public TeamIndex<T> teamIndex(){
+        if(teamIndex == null) throw new RuntimeException("Team indexing is not enabled for group " + id + "!");
+        return teamIndex;
+    }
+
     public Class<T> getType(){
         return type;
     }
@@ -184,6 +201,10 @@ public class EntityGroup<T extends Entity> implements Iterable<T>{
         if(useTree){
             tree = new QuadTree<>(new Rect(x, y, w, h));
         }
+
+        if(teamIndex != null){
+            teamIndex.resize(x, y, w, h);
+        }
     }
 
     public boolean isEmpty(){
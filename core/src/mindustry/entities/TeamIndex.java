@@ -0,0 +1,129 @@
+package mindustry.entities;
+
+import arc.func.*;
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.entities.traits.*;
+import mindustry.game.*;
+
+/**
+ * A uniform grid of entities, bucketed by team.
+ * Rebuilt every time the physics of its group are updated. Entities must implement both SolidTrait and TeamTrait.
+ */
+@SuppressWarnings("unchecked")
+public class TeamIndex<T extends Entity>{
+    /** Size of one cell in world units. */
+    private static final float cellSize = 64f;
+
+    private final Rect hitrect = new Rect();
+    /** Teams that had at least one entity during the last rebuild. */
+    private final Array<Team> teams = new Array<>();
+    /** Maps team IDs to their cells, indexed as x + y * width. Null if the team never had any entities. */
+    private Array<T>[][] cells = new Array[Team.all().length][];
+    /** Maps team IDs to the indices of their non-empty cells. */
+    private IntArray[] used = new IntArray[Team.all().length];
+    private float offsetX, offsetY;
+    private int width = 1, height = 1;
+    /** Largest hitbox dimension of any indexed entity, used to pad queries. */
+    private float maxSize;
+
+    /** Resizes the grid to cover these world bounds, removing all entities. */
+    public void resize(float x, float y, float w, float h){
+        offsetX = x;
+        offsetY = y;
+        width = Math.max(Mathf.ceil(w / cellSize), 1);
+        height = Math.max(Mathf.ceil(h / cellSize), 1);
+        cells = new Array[Team.all().length][];
+        used = new IntArray[Team.all().length];
+        teams.clear();
+    }
+
+    /** Clears the grid and inserts every entity in this array. */
+    public void rebuild(Array<T> entities){
+        for(int i = 0; i < teams.size; i++){
+            int id = Pack.u(teams.get(i).id);
+            IntArray list = used[id];
+            for(int j = 0; j < list.size; j++){
+                cells[id][list.get(j)].clear();
+            }
+            list.clear();
+        }
+
+        teams.clear();
+        maxSize = 0f;
+
+        for(int i = 0; i < entities.size; i++){
+            T entity = entities.get(i);
+            Team team = ((TeamTrait)entity).getTeam();
+            int id = Pack.u(team.id);
+
+            if(cells[id] == null){
+                cells[id] = new Array[width * height];
+                used[id] = new IntArray();
+            }
+
+            if(used[id].isEmpty()){
+                teams.add(team);
+            }
+
+            int cell = cellX(entity.getX()) + cellY(entity.getY()) * width;
+            if(cells[id][cell] == null){
+                cells[id][cell] = new Array<>(false, 16);
+            }
+
+            if(cells[id][cell].isEmpty()){
+                used[id].add(cell);
+            }
+
+            cells[id][cell].add(entity);
+
+            ((SolidTrait)entity).hitbox(hitrect);
+            maxSize = Math.max(maxSize, Math.max(hitrect.width, hitrect.height));
+        }
+    }
+
+    /** @return all teams that have entities in this index. Do not modify! */
+    public Array<Team> teams(){
+        return teams;
+    }
+
+    /** Iterates over all entities of a team whose hitbox overlaps this rectangle. */
+    public void intersect(Team team, float x, float y, float width, float height, Cons<? super T> cons){
+        int id = Pack.u(team.id);
+        if(used[id] == null || used[id].isEmpty()) return;
+
+        //entities are bucketed by their center, so the search area must be padded by their size
+        float pad = maxSize / 2f;
+        int minx = cellX(x - pad), miny = cellY(y - pad), maxx = cellX(x + width + pad), maxy = cellY(y + height + pad);
+
+        for(int cy = miny; cy <= maxy; cy++){
+            for(int cx = minx; cx <= maxx; cx++){
+                Array<T> cell = cells[id][cx + cy * this.width];
+                if(cell == null) continue;
+
+                for(int i = 0; i < cell.size; i++){
+                    T entity = cell.get(i);
+                    ((SolidTrait)entity).hitbox(hitrect);
+                    if(hitrect.overlaps(x, y, width, height)){
+                        cons.get(entity);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Adds all entities of a team whose hitbox overlaps this rectangle to an array owned by the caller. The array is not cleared first. */
+    public void intersect(Team team, float x, float y, float width, float height, Array<? super T> out){
+        intersect(team, x, y, width, height, out::add);
+    }
+
+    private int cellX(float x){
+        return Mathf.clamp((int)((x - offsetX) / cellSize), 0, width - 1);
+    }
+
+    private int cellY(float y){
+        return Mathf.clamp((int)((y - offsetY) / cellSize), 0, height - 1);
+    }
+}
@@ -0,0 +1,102 @@
+package mindustry.entities;
+
+import arc.struct.*;
+import arc.util.ArcAnnotate.*;
+import mindustry.entities.type.*;
+import mindustry.world.*;
+
+import java.util.concurrent.*;
+
+import static mindustry.Vars.world;
+
+/**
+ * Runs the compute phase of blocks with {@link Block#parallelUpdate} on multiple threads, before the tile group is updated.
+ * Entities are partitioned into square chunks of tiles, and each chunk is computed by a single task.
+ * Since a compute phase only modifies its own entity, the result does not depend on how tasks are scheduled;
+ * the commit phases then run on the main thread, in the regular update order of the tile group.
+ * All compute phases run before any power graph updates this frame, so they see the power satisfaction of the previous frame.
+ */
+@SuppressWarnings("unchecked")
+public class TileUpdater{
+    /** Size of one chunk in tiles. */
+    private static final int chunkSize = 32;
+
+    /** Created the first time parallel updates are enabled. */
+    private @Nullable ForkJoinPool pool;
+    /** Entities of each chunk, indexed as x + y * chunksX. */
+    private Array<TileEntity>[] chunks = new Array[0];
+    /** Indices of chunks that contain entities this frame. */
+    private final IntArray used = new IntArray();
+    private int chunksX;
+
+    /** Runs the compute phase of all active tile entities that support it, and waits for it to finish. */
+    public void compute(EntityGroup<TileEntity> group){
+        //entities added since the last update should be computed too
+        group.updateEvents();
+
+        int width = (world.width() + chunkSize - 1) / chunkSize, height = (world.height() + chunkSize - 1) / chunkSize;
+        if(width != chunksX || width * height != chunks.length){
+            chunks = new Array[width * height];
+            chunksX = width;
+        }
+
+        Array<TileEntity> entities = group.all();
+        for(int i = 0; i < entities.size; i++){
+            TileEntity entity = entities.get(i);
+            if(!entity.block.parallelUpdate) continue;
+
+            int index = entity.tile.x / chunkSize + entity.tile.y / chunkSize * chunksX;
+            if(chunks[index] == null){
+                chunks[index] = new Array<>(false, 16);
+            }
+
+            if(chunks[index].isEmpty()){
+                used.add(index);
+            }
+            chunks[index].add(entity);
+        }
+
+        if(!used.isEmpty()){
+            if(pool == null){
+                pool = new ForkJoinPool(Math.max(Runtime.getRuntime().availableProcessors(), 1), p -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                    thread.setName("Tile Update Worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }, null, false);
+            }
+
+            try{
+                pool.invoke(new ComputeTask(0, used.size));
+            }finally{
+                for(int i = 0; i < used.size; i++){
+                    chunks[used.get(i)].clear();
+                }
+                used.clear();
+            }
+        }
+    }
+
+    /** Computes a range of used chunks, splitting it in half until only one chunk is left. */
+    private class ComputeTask extends RecursiveAction{
+        final int from, to;
+
+        ComputeTask(int from, int to){
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from == 1){
+                Array<TileEntity> chunk = chunks[used.get(from)];
+                for(int i = 0; i < chunk.size; i++){
+                    chunk.get(i).updateCompute();
+                }
+            }else{
+                int mid = (from + to) >>> 1;
+                invokeAll(new ComputeTask(from, mid), new ComputeTask(mid, to));
+            }
+        }
+    }
+}
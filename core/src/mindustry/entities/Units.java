@@ -3,6 +3,7 @@ package mindustry.entities;
 import arc.func.*;
 import arc.math.*;
 import arc.math.geom.*;
+import arc.struct.*;
 import mindustry.entities.traits.*;
 import mindustry.entities.type.*;
 import mindustry.game.*;
@@ -15,6 +16,9 @@ public class Units{
     private static Rect hitrect = new Rect();
     private static Unit result;
     private static float cdist;
+    /** Buffers for enemy queries, one per nesting level. */
+    private static final Array<Array<Unit>> enemyBuffers = new Array<>();
+    private static int enemyDepth;
     private static boolean boolResult;
 
     /** @return whether this player can interact with a specific tile. if either of these are null, returns true.*/
@@ -115,19 +119,45 @@ public class Units{
         result = null;
         cdist = 0f;
 
-        nearbyEnemies(team, x - range, y - range, range*2f, range*2f, e -> {
-            if(e.isDead() || !predicate.get(e)) return;
-
-            float dst2 = Mathf.dst2(e.x, e.y, x, y);
-            if(dst2 < range*range && (result == null || dst2 < cdist)){
-                result = e;
-                cdist = dst2;
-            }
-        });
+        closestEnemy(unitGroup.teamIndex(), team, x, y, range, predicate);
+        closestEnemy(playerGroup.teamIndex(), team, x, y, range, predicate);
 
         return result;
     }
 
+    /** Finds the closest enemy in a team index without allocating. Stores the result in {@link #result}. */
+    private static void closestEnemy(TeamIndex<? extends Unit> index, Team team, float x, float y, float range, Boolf<Unit> predicate){
+        Array<Team> teams = index.teams();
+
+        //predicates may query units again, so each nesting level gets its own buffer
+        if(enemyBuffers.size <= enemyDepth){
+            enemyBuffers.add(new Array<>());
+        }
+        Array<Unit> units = enemyBuffers.get(enemyDepth++);
+
+        try{
+            for(int i = 0; i < teams.size; i++){
+                if(!team.isEnemy(teams.get(i))) continue;
+
+                units.clear();
+                index.intersect(teams.get(i), x - range, y - range, range*2f, range*2f, units);
+                for(int j = 0; j < units.size; j++){
+                    Unit e = units.get(j);
+                    if(e.isDead() || !predicate.get(e)) continue;
+
+                    float dst2 = Mathf.dst2(e.x, e.y, x, y);
+                    if(dst2 < range*range && (result == null || dst2 < cdist)){
+                        result = e;
+                        cdist = dst2;
+                    }
+                }
+            }
+        }finally{
+            units.clear();
+            enemyDepth--;
+        }
+    }
+
     /** Returns the closest ally of this team. Filter by predicate. */
     public static Unit closest(Team team, float x, float y, float range, Boolf<Unit> predicate){
         result = null;
@@ -148,28 +178,19 @@ public class Units{
 
     /** Iterates over all units in a rectangle. */
     public static void nearby(Team team, float x, float y, float width, float height, Cons<Unit> cons){
-        unitGroup.intersect(x, y, width, height, u -> {
-            if(u.getTeam() == team){
-                cons.get(u);
-            }
-        });
-        playerGroup.intersect(x, y, width, height, player -> {
-            if(player.getTeam() == team){
-                cons.get(player);
-            }
-        });
+        unitGroup.teamIndex().intersect(team, x, y, width, height, cons);
+        playerGroup.teamIndex().intersect(team, x, y, width, height, cons);
     }
 
     /** Iterates over all units in a circle around this position. */
     public static void nearby(Team team, float x, float y, float radius, Cons<Unit> cons){
-        unitGroup.intersect(x - radius, y - radius, radius*2f, radius*2f, unit -> {
-            if(unit.getTeam() == team && unit.withinDst(x, y, radius)){
-                cons.get(unit);
-            }
-        });
+        nearby(unitGroup.teamIndex(), team, x, y, radius, cons);
+        nearby(playerGroup.teamIndex(), team, x, y, radius, cons);
+    }
 
-        playerGroup.intersect(x - radius, y - radius, radius*2f, radius*2f, unit -> {
-            if(unit.getTeam() == team && unit.withinDst(x, y, radius)){
+    private static void nearby(TeamIndex<? extends Unit> index, Team team, float x, float y, float radius, Cons<Unit> cons){
+        index.intersect(team, x - radius, y - radius, radius*2f, radius*2f, unit -> {
+            if(unit.withinDst(x, y, radius)){
                 cons.get(unit);
             }
         });
@@ -186,19 +207,19 @@ public class Units{
         nearby(rect.x, rect.y, rect.width, rect.height, cons);
     }
 
-    /** Iterates over all units that are enemies of this team. */
+    /** Iterates over all units that are enemies of this team. Only the units of enemy teams are visited. */
     public static void nearbyEnemies(Team team, float x, float y, float width, float height, Cons<Unit> cons){
-        unitGroup.intersect(x, y, width, height, u -> {
-            if(team.isEnemy(u.getTeam())){
-                cons.get(u);
-            }
-        });
+        nearbyEnemies(unitGroup.teamIndex(), team, x, y, width, height, cons);
+        nearbyEnemies(playerGroup.teamIndex(), team, x, y, width, height, cons);
+    }
 
-        playerGroup.intersect(x, y, width, height, player -> {
-            if(team.isEnemy(player.getTeam())){
-                cons.get(player);
+    private static void nearbyEnemies(TeamIndex<? extends Unit> index, Team team, float x, float y, float width, float height, Cons<Unit> cons){
+        Array<Team> teams = index.teams();
+        for(int i = 0; i < teams.size; i++){
+            if(team.isEnemy(teams.get(i))){
+                index.intersect(teams.get(i), x, y, width, height, cons);
             }
-        });
+        }
     }
 
     /** Iterates over all units that are enemies of this team. */
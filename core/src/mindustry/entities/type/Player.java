@@ -35,7 +35,6 @@ import java.io.*;
 import static mindustry.Vars.*;
 
 public class Player extends Unit implements BuilderMinerTrait, ShooterTrait{
-    public static final int timerSync = 2;
     public static final int timerAbility = 3;
     private static final int timerShootLeft = 0;
     private static final int timerShootRight = 1;
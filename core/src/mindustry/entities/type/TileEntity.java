@@ -45,6 +45,8 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
     private boolean dead = false;
     private boolean sleeping;
     private float sleepTime;
+    /** Whether the compute phase of this entity's block already ran this frame. */
+    private boolean computed;
     private @Nullable SoundLoop sound;
 
     @Remote(called = Loc.server, unreliable = true)
@@ -94,7 +96,11 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
         return power != null && (block.consumes.has(ConsumeType.power) && !block.consumes.getPower().buffered) ? power.status : 1f;
     }
 
-    /** Call when nothing is happening to the entity. This increments the internal sleep timer. */
+    /**
+     * Call when nothing is happening to the entity. This increments the internal sleep timer.
+     * Once asleep, the entity is removed from the tile group and no longer updated, until {@link #noSleep()} is called.
+     * This happens when items or liquids are handed to it, when it is damaged or configured, and when its proximity or power graph changes.
+     */
     public void sleep(){
         sleepTime += Time.delta();
         if(!sleeping && sleepTime >= timeToSleep){
@@ -118,6 +124,34 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
         return sleeping;
     }
 
+    /**
+     * Runs the compute phase of this block's update, after letting an expired overdrive run out.
+     * The commit phase then runs in place of the regular update. May be called from any thread.
+     */
+    public void updateCompute(){
+        updateTimeScale();
+        block.updateCompute(tile);
+        computed = true;
+    }
+
+    private void updateTimeScale(){
+        timeScaleDuration -= Time.delta();
+        if(timeScaleDuration <= 0f || !block.canOverdrive){
+            timeScale = 1f;
+        }
+    }
+
+    @Override
+    public void remove(){
+        if(sleeping){
+            sleeping = false;
+            sleepingEntities--;
+        }
+        //a compute phase that ran right before removal must not turn the next update into a commit
+        computed = false;
+        super.remove();
+    }
+
     public boolean isDead(){
         return dead || tile.entity != this;
     }
@@ -170,6 +204,8 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
     public void damage(float damage){
         if(dead) return;
 
+        noSleep();
+
         if(Mathf.zero(state.rules.blockHealthMultiplier)){
             damage = health + 1;
         }else{
@@ -303,9 +339,9 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
 
     @Override
     public void update(){
-        timeScaleDuration -= Time.delta();
-        if(timeScaleDuration <= 0f || !block.canOverdrive){
-            timeScale = 1f;
+        //the compute phase already did this
+        if(!computed){
+            updateTimeScale();
         }
 
         if(health <= 0){
@@ -321,7 +357,12 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
             loops.play(block.idleSound, this, block.idleSoundVolume);
         }
 
-        block.update(tile);
+        if(computed){
+            computed = false;
+            block.updateCommit(tile);
+        }else{
+            block.update(tile);
+        }
 
         if(liquids != null){
             liquids.update();
@@ -332,6 +373,7 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
         }
 
         if(power != null){
+            power.graph.refresh(tile);
             power.graph.update();
         }
     }
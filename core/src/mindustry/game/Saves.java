@@ -5,6 +5,7 @@ import arc.assets.*;
 import arc.struct.*;
 import arc.files.*;
 import arc.graphics.*;
+import arc.util.ArcAnnotate.*;
 import arc.util.*;
 import arc.util.async.*;
 import mindustry.*;
@@ -79,11 +80,11 @@ public class Saves{
 
                 Time.runTask(2f, () -> {
                     try{
-                        current.save();
+                        current.saveAsync(() -> saving = false);
                     }catch(Exception e){
                         e.printStackTrace();
+                        saving = false;
                     }
-                    saving = false;
                 });
 
                 time = 0;
@@ -186,6 +187,25 @@ public class Saves{
             savePreview();
         }
 
+        /** Saves in the background, only blocking to take a snapshot of the world. */
+        public void saveAsync(Runnable done){
+            //the preview is taken now, since a different map may be shown once the save is written
+            Pixmap preview = copyPreview();
+            SaveIO.saveAsync(file, (success, snapshotTime, writeTime) -> {
+                if(success){
+                    meta = SaveIO.getMeta(file);
+                    savePreview(preview);
+                }else if(preview != null){
+                    preview.dispose();
+                }
+                done.run();
+            });
+
+            if(!state.is(State.menu)){
+                current = this;
+            }
+        }
+
         private void savePreview(){
             if(Core.assets.isLoaded(loadPreviewFile().path())){
                 Core.assets.unload(loadPreviewFile().path());
@@ -200,6 +220,35 @@ public class Saves{
             });
         }
 
+        /** Writes a preview copied earlier with {@link #copyPreview()}, and disposes it. */
+        private void savePreview(@Nullable Pixmap preview){
+            if(preview == null) return;
+
+            if(Core.assets.isLoaded(loadPreviewFile().path())){
+                Core.assets.unload(loadPreviewFile().path());
+            }
+            previewExecutor.submit(() -> {
+                try{
+                    previewFile().writePNG(preview);
+                    requestedPreview = false;
+                }catch(Throwable t){
+                    t.printStackTrace();
+                }finally{
+                    Core.app.post(preview::dispose);
+                }
+            });
+        }
+
+        /** @return a copy of the current minimap, or null if there is none. */
+        private @Nullable Pixmap copyPreview(){
+            Pixmap source = renderer.minimap.getPixmap();
+            if(source == null) return null;
+
+            Pixmap copy = new Pixmap(source.getWidth(), source.getHeight(), Pixmap.Format.RGBA8888);
+            copy.drawPixmap(source, 0, 0);
+            return copy;
+        }
+
         public Texture previewTexture(){
             if(!previewFile().exists()){
                 return null;
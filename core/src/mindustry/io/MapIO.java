@@ -121,6 +121,10 @@ public class MapIO{
                     if(content.block(overlayID) == Blocks.spawn){
                         map.spawns ++;
                     }
+                    //tiles are created with their block, which draws the wall
+                    tile.x = (short)x;
+                    tile.y = (short)y;
+                    tile.setBlock(content.block(wallID));
                     return tile;
                 }
             }));
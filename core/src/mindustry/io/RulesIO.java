@@ -0,0 +1,235 @@
+package mindustry.io;
+
+import arc.graphics.*;
+import arc.struct.*;
+import mindustry.ctype.*;
+import mindustry.game.*;
+import mindustry.type.*;
+import mindustry.world.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+
+import static mindustry.Vars.content;
+
+/**
+ * Binary encoding of {@link Rules}, used to send them over the network.
+ * The layout is built once from the public fields of Rules, so new rules are picked up automatically;
+ * a rule with a type that has no encoding below fails when this class is initialized.
+ * Content is written by ID, so both sides must have the same content loaded.
+ */
+public class RulesIO{
+    /** Bump when the encoding of any type changes. */
+    private static final int version = 1;
+    /** Encoded fields, sorted by name. */
+    private static final Field[] fields;
+    private static final Codec[] codecs;
+
+    static{
+        Array<Field> list = new Array<>();
+        for(Field field : Rules.class.getFields()){
+            if(!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())){
+                list.add(field);
+            }
+        }
+        list.sort((a, b) -> a.getName().compareTo(b.getName()));
+
+        fields = list.toArray(Field.class);
+        codecs = new Codec[fields.length];
+        for(int i = 0; i < fields.length; i++){
+            codecs[i] = codec(fields[i].getType(), fields[i].getGenericType());
+        }
+    }
+
+    public static byte[] write(Rules rules){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try{
+            write(new DataOutputStream(bytes), rules);
+        }catch(IOException e){
+            //writing into memory should never fail
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void write(DataOutput stream, Rules rules) throws IOException{
+        stream.writeByte(version);
+        stream.writeShort(fields.length);
+
+        try{
+            for(int i = 0; i < fields.length; i++){
+                codecs[i].write(stream, fields[i].get(rules));
+            }
+        }catch(IllegalAccessException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Rules read(byte[] bytes){
+        try{
+            return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Rules read(DataInput stream) throws IOException{
+        int ver = stream.readUnsignedByte();
+        int amount = stream.readUnsignedShort();
+        if(ver != version || amount != fields.length){
+            throw new IOException("Incompatible rules: version " + ver + " with " + amount + " fields, expected version " + version + " with " + fields.length + " fields.");
+        }
+
+        Rules rules = new Rules();
+        try{
+            for(int i = 0; i < fields.length; i++){
+                fields[i].set(rules, codecs[i].read(stream));
+            }
+        }catch(IllegalAccessException e){
+            throw new RuntimeException(e);
+        }
+        return rules;
+    }
+
+    private static Codec codec(Class<?> type, Type generic){
+        if(type == boolean.class) return of((s, v) -> s.writeBoolean((Boolean)v), DataInput::readBoolean);
+        if(type == int.class) return of((s, v) -> s.writeInt((Integer)v), DataInput::readInt);
+        if(type == float.class) return of((s, v) -> s.writeFloat((Float)v), DataInput::readFloat);
+
+        if(type == Team.class) return nullable(of((s, v) -> s.writeByte(((Team)v).id), s -> Team.get(s.readByte())));
+        if(type == Color.class) return nullable(of((s, v) -> {
+            Color color = (Color)v;
+            s.writeFloat(color.r);
+            s.writeFloat(color.g);
+            s.writeFloat(color.b);
+            s.writeFloat(color.a);
+        }, s -> new Color(s.readFloat(), s.readFloat(), s.readFloat(), s.readFloat())));
+        if(type == StringMap.class) return nullable(of((s, v) -> {
+            StringMap map = (StringMap)v;
+            s.writeInt(map.size);
+            for(ObjectMap.Entry<String, String> entry : map){
+                s.writeUTF(entry.key);
+                s.writeUTF(entry.value);
+            }
+        }, s -> {
+            StringMap map = new StringMap();
+            int amount = s.readInt();
+            for(int i = 0; i < amount; i++){
+                map.put(s.readUTF(), s.readUTF());
+            }
+            return map;
+        }));
+
+        if(type == Zone.class) return content(ContentType.zone);
+        if(type == Block.class) return content(ContentType.block);
+        if(type == Item.class) return content(ContentType.item);
+        if(type == UnitType.class) return content(ContentType.unit);
+        if(type == StatusEffect.class) return content(ContentType.status);
+
+        if(type == ItemStack.class){
+            Codec item = content(ContentType.item);
+            return nullable(of((s, v) -> {
+                item.write(s, ((ItemStack)v).item);
+                s.writeInt(((ItemStack)v).amount);
+            }, s -> new ItemStack((Item)item.read(s), s.readInt())));
+        }
+
+        if(type == SpawnGroup.class){
+            Codec unit = content(ContentType.unit), effect = content(ContentType.status), items = codec(ItemStack.class, ItemStack.class);
+            return nullable(of((s, v) -> {
+                SpawnGroup group = (SpawnGroup)v;
+                unit.write(s, group.type);
+                s.writeInt(group.begin);
+                s.writeInt(group.end);
+                s.writeInt(group.spacing);
+                s.writeInt(group.max);
+                s.writeFloat(group.unitScaling);
+                s.writeInt(group.unitAmount);
+                effect.write(s, group.effect);
+                items.write(s, group.items);
+            }, s -> {
+                SpawnGroup group = new SpawnGroup((UnitType)unit.read(s));
+                group.begin = s.readInt();
+                group.end = s.readInt();
+                group.spacing = s.readInt();
+                group.max = s.readInt();
+                group.unitScaling = s.readFloat();
+                group.unitAmount = s.readInt();
+                group.effect = (StatusEffect)effect.read(s);
+                group.items = (ItemStack)items.read(s);
+                return group;
+            }));
+        }
+
+        if((type == Array.class || type == ObjectSet.class) && generic instanceof ParameterizedType){
+            Type elementType = ((ParameterizedType)generic).getActualTypeArguments()[0];
+            if(elementType instanceof Class){
+                Codec element = codec((Class<?>)elementType, elementType);
+                boolean array = type == Array.class;
+
+                return nullable(of((s, v) -> {
+                    Iterable<?> values = (Iterable<?>)v;
+                    s.writeInt(array ? ((Array<?>)v).size : ((ObjectSet<?>)v).size);
+                    for(Object value : values){
+                        element.write(s, value);
+                    }
+                }, s -> {
+                    int amount = s.readInt();
+                    if(array){
+                        Array<Object> out = new Array<>(amount);
+                        for(int i = 0; i < amount; i++){
+                            out.add(element.read(s));
+                        }
+                        return out;
+                    }else{
+                        ObjectSet<Object> out = new ObjectSet<>();
+                        for(int i = 0; i < amount; i++){
+                            out.add(element.read(s));
+                        }
+                        return out;
+                    }
+                }));
+            }
+        }
+
+        throw new IllegalArgumentException("Rules field type cannot be encoded: " + generic);
+    }
+
+    /** Writes content by ID; null is written as -1. */
+    private static Codec content(ContentType type){
+        return of((s, v) -> s.writeShort(v == null ? -1 : ((Content)v).id), s -> content.getByID(type, s.readShort()));
+    }
+
+    /** Prefixes a codec with a flag for null values. */
+    private static Codec nullable(Codec codec){
+        return of((s, v) -> {
+            s.writeBoolean(v != null);
+            if(v != null) codec.write(s, v);
+        }, s -> s.readBoolean() ? codec.read(s) : null);
+    }
+
+    private static Codec of(Encoder encoder, Decoder decoder){
+        return new Codec(){
+            @Override
+            public void write(DataOutput stream, Object value) throws IOException{
+                encoder.write(stream, value);
+            }
+
+            @Override
+            public Object read(DataInput stream) throws IOException{
+                return decoder.read(stream);
+            }
+        };
+    }
+
+    private interface Codec extends Encoder, Decoder{
+    }
+
+    private interface Encoder{
+        void write(DataOutput stream, Object value) throws IOException;
+    }
+
+    private interface Decoder{
+        Object read(DataInput stream) throws IOException;
+    }
+}
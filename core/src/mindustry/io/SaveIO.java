@@ -1,15 +1,17 @@
 package mindustry.io;
 
+import arc.*;
 import arc.struct.*;
 import arc.files.Fi;
+import arc.util.*;
 import arc.util.io.CounterInputStream;
-import arc.util.io.FastDeflaterOutputStream;
 import mindustry.Vars;
 import mindustry.io.versions.*;
 import mindustry.world.WorldContext;
 
 import java.io.*;
 import java.util.Arrays;
+import java.util.concurrent.*;
 import java.util.zip.InflaterInputStream;
 
 import static mindustry.Vars.*;
@@ -19,6 +21,12 @@ public class SaveIO{
     public static final byte[] header = {77, 83, 65, 86};
     public static final IntMap<SaveVersion> versions = new IntMap<>();
     public static final Array<SaveVersion> versionArray = Array.with(new Save1(), new Save2(), new Save3());
+    /** Finishes background saves one at a time, so that saves to the same file never overlap. */
+    private static final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Save Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     static{
         for(SaveVersion version : versionArray){
@@ -35,6 +43,9 @@ public class SaveIO{
     }
 
     public static void save(Fi file){
+        //background saves that are still pending would otherwise replace this newer save once they finish
+        awaitBackgroundSaves();
+
         boolean exists = file.exists();
         if(exists) file.moveTo(backupFileFor(file));
         try{
@@ -45,6 +56,51 @@ public class SaveIO{
         }
     }
 
+    /**
+     * Saves to a file in the background; only taking a snapshot of the world blocks the calling thread.
+     * The new save is written next to the file, then replaces it, and the previous save becomes the backup.
+     * Must be called on the main thread.
+     * @param done run on the main thread once saving has finished.
+     */
+    public static void saveAsync(Fi file, SaveCallback done){
+        long start = Time.millis();
+        SaveSnapshot snapshot;
+        try{
+            snapshot = getVersion().snapshot(null);
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+        long snapshotTime = Time.timeSinceMillis(start);
+
+        saveExecutor.submit(() -> {
+            long writeStart = Time.millis();
+            Fi temp = file.sibling(file.name() + ".tmp");
+            try{
+                write(temp, snapshot);
+
+                //if this is interrupted between the moves, loading falls back to the backup
+                if(file.exists()) file.moveTo(backupFileFor(file));
+                temp.moveTo(file);
+
+                long writeTime = Time.timeSinceMillis(writeStart);
+                Core.app.post(() -> done.done(true, snapshotTime, writeTime));
+            }catch(Throwable e){
+                Log.err("Failed to save to " + file + ".", e);
+                temp.delete();
+                Core.app.post(() -> done.done(false, snapshotTime, 0));
+            }
+        });
+    }
+
+    /** Blocks until all background saves queued so far have finished. */
+    public static void awaitBackgroundSaves(){
+        try{
+            saveExecutor.submit(() -> {}).get();
+        }catch(InterruptedException | ExecutionException e){
+            Log.err(e);
+        }
+    }
+
     public static DataInputStream getStream(Fi file){
         return new DataInputStream(new InflaterInputStream(file.read(bufferSize)));
     }
@@ -101,7 +157,20 @@ public class SaveIO{
     }
 
     public static void write(Fi file, StringMap tags){
-        write(new FastDeflaterOutputStream(file.write(false, bufferSize)), tags);
+        try{
+            write(file, getVersion().snapshot(tags));
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Writes a snapshot taken earlier. Unlike the other methods here, this may be called from any thread. */
+    public static void write(Fi file, SaveSnapshot snapshot){
+        try(OutputStream stream = file.write(false, bufferSize)){
+            snapshot.write(stream);
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
     }
 
     public static void write(Fi file){
@@ -170,6 +239,15 @@ public class SaveIO{
         }
     }
 
+    public interface SaveCallback{
+        /**
+         * @param success whether the save was written and replaced the previous one.
+         * @param snapshotTime time spent taking the snapshot on the main thread, in milliseconds.
+         * @param writeTime time spent writing the snapshot in the background, in milliseconds.
+         */
+        void done(boolean success, long snapshotTime, long writeTime);
+    }
+
     public static class SaveException extends RuntimeException{
         public SaveException(Throwable throwable){
             super(throwable);
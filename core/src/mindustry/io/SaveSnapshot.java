@@ -0,0 +1,238 @@
+package mindustry.io;
+
+import arc.struct.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * A copy of everything written to a save file, taken by {@link SaveVersion#snapshot(StringMap)}.
+ * Taking it is the only part of saving that has to run on the main thread; {@link #write(OutputStream)}
+ * encodes the map in bands of rows and compresses the result in blocks, both in parallel, and can run on any thread.
+ * The output is a regular save file.
+ */
+public class SaveSnapshot{
+    /** Rows of tiles encoded by a single task. */
+    private static final int bandHeight = 32;
+    /** Maximum amount of uncompressed bytes compressed by a single task. */
+    private static final int blockSize = 256 * 1024;
+    private static final ExecutorService executor = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), 1), r -> {
+        Thread thread = new Thread(r, "Save Worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    final int version, width, height;
+    final short[] floors, overlays, blocks;
+    /** Serialized tile entity chunks, including their length. */
+    final ByteArrayOutputStream entityData = new ByteArrayOutputStream();
+    /** Maps tile indices to the offset of their tile entity chunk in {@link #entityData}. Tiles without an entity are not present. */
+    final IntIntMap entityOffsets = new IntIntMap();
+    byte[] meta, contentHeader, entities;
+
+    SaveSnapshot(int version, int width, int height){
+        this.version = version;
+        this.width = width;
+        this.height = height;
+        this.floors = new short[width * height];
+        this.overlays = new short[width * height];
+        this.blocks = new short[width * height];
+    }
+
+    /** Writes a compressed save file to this stream. Does not close it. */
+    public void write(OutputStream output) throws IOException{
+        //encode each band of rows in parallel
+        int bands = Math.max((height + bandHeight - 1) / bandHeight, 1);
+        byte[] entityBytes = entityData.toByteArray();
+        ArrayList<Callable<byte[][]>> encoders = new ArrayList<>();
+        for(int i = 0; i < bands; i++){
+            int from = i * bandHeight * width, to = Math.min((i + 1) * bandHeight * width, width * height);
+            encoders.add(() -> new byte[][]{encodeFloors(from, to), encodeBlocks(from, to, entityBytes)});
+        }
+
+        byte[][][] encoded = new byte[bands][][];
+        List<Future<byte[][]>> results = invokeAll(encoders);
+        for(int i = 0; i < bands; i++){
+            encoded[i] = get(results.get(i));
+        }
+
+        //lay out the uncompressed file as a list of segments, in the same format as SaveVersion#write
+        Array<byte[]> segments = new Array<>();
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        DataOutputStream headData = new DataOutputStream(head);
+        headData.write(SaveIO.header);
+        headData.writeInt(version);
+        headData.writeInt(meta.length);
+        headData.write(meta);
+        headData.writeInt(contentHeader.length);
+        headData.write(contentHeader);
+
+        int mapLength = 4;
+        for(byte[][] band : encoded){
+            mapLength += band[0].length + band[1].length;
+        }
+        headData.writeInt(mapLength);
+        headData.writeShort(width);
+        headData.writeShort(height);
+        segments.add(head.toByteArray());
+
+        for(byte[][] band : encoded) segments.add(band[0]);
+        for(byte[][] band : encoded) segments.add(band[1]);
+
+        ByteArrayOutputStream tail = new ByteArrayOutputStream();
+        new DataOutputStream(tail).writeInt(entities.length);
+        segments.add(tail.toByteArray());
+        segments.add(entities);
+
+        deflate(segments, output);
+    }
+
+    /** Encodes floors and overlays of these tiles like SaveVersion#writeMap. Runs are cut at the end of the band, which readers do not care about. */
+    private byte[] encodeFloors(int from, int to) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+
+        for(int i = from; i < to; i++){
+            stream.writeShort(floors[i]);
+            stream.writeShort(overlays[i]);
+            int consecutives = 0;
+
+            for(int j = i + 1; j < to && consecutives < 255; j++){
+                if(floors[j] != floors[i] || overlays[j] != overlays[i]){
+                    break;
+                }
+
+                consecutives++;
+            }
+
+            stream.writeByte(consecutives);
+            i += consecutives;
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /** Encodes blocks and tile entities of these tiles like SaveVersion#writeMap. */
+    private byte[] encodeBlocks(int from, int to, byte[] entityBytes) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+
+        for(int i = from; i < to; i++){
+            stream.writeShort(blocks[i]);
+
+            int offset = entityOffsets.get(i, -1);
+            if(offset != -1){
+                int length = ((entityBytes[offset] & 0xff) << 8) | (entityBytes[offset + 1] & 0xff);
+                stream.write(entityBytes, offset, length + 2);
+            }else{
+                int consecutives = 0;
+
+                for(int j = i + 1; j < to && consecutives < 255; j++){
+                    if(blocks[j] != blocks[i]){
+                        break;
+                    }
+
+                    consecutives++;
+                }
+
+                stream.writeByte(consecutives);
+                i += consecutives;
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Compresses segments into one zlib stream. Blocks of data are deflated independently and joined with sync flushes,
+     * so the result can be read by any inflater.
+     */
+    private static void deflate(Array<byte[]> segments, OutputStream output) throws IOException{
+        ArrayList<Callable<byte[]>> compressors = new ArrayList<>();
+        Adler32 checksum = new Adler32();
+
+        //split segments into blocks; only the last one finishes the stream
+        Array<byte[]> sources = new Array<>();
+        IntArray offsets = new IntArray(), lengths = new IntArray();
+        for(byte[] segment : segments){
+            checksum.update(segment, 0, segment.length);
+
+            for(int offset = 0; offset < segment.length; offset += blockSize){
+                sources.add(segment);
+                offsets.add(offset);
+                lengths.add(Math.min(blockSize, segment.length - offset));
+            }
+        }
+
+        for(int i = 0; i < sources.size; i++){
+            byte[] source = sources.get(i);
+            int offset = offsets.get(i), length = lengths.get(i);
+            boolean last = i == sources.size - 1;
+            compressors.add(() -> deflate(source, offset, length, last));
+        }
+
+        List<Future<byte[]>> results = invokeAll(compressors);
+
+        //zlib header for the fastest compression level
+        output.write(0x78);
+        output.write(0x01);
+        for(Future<byte[]> result : results){
+            output.write(get(result));
+        }
+
+        int adler = (int)checksum.getValue();
+        output.write(adler >>> 24);
+        output.write(adler >>> 16);
+        output.write(adler >>> 8);
+        output.write(adler);
+    }
+
+    private static byte[] deflate(byte[] bytes, int offset, int length, boolean last){
+        //same level as the fast deflater used for regular saves
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+        byte[] buffer = new byte[16384];
+
+        try{
+            deflater.setInput(bytes, offset, length);
+
+            if(last){
+                deflater.finish();
+                while(!deflater.finished()){
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+            }else{
+                //a sync flush ends on a byte boundary without marking the final block, so the next block can follow directly
+                int written;
+                do{
+                    written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, written);
+                }while(written == buffer.length || !deflater.needsInput());
+            }
+        }finally{
+            deflater.end();
+        }
+
+        return out.toByteArray();
+    }
+
+    private static <T> List<Future<T>> invokeAll(List<Callable<T>> tasks) throws IOException{
+        try{
+            return executor.invokeAll(tasks);
+        }catch(InterruptedException e){
+            throw new IOException("Interrupted while saving.", e);
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException{
+        try{
+            return future.get();
+        }catch(InterruptedException e){
+            throw new IOException("Interrupted while saving.", e);
+        }catch(ExecutionException e){
+            throw new IOException("Failed to encode save data.", e.getCause());
+        }
+    }
+}
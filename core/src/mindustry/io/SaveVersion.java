@@ -60,6 +60,41 @@ public abstract class SaveVersion extends SaveFileReader{
         region("entities", stream, this::writeEntities);
     }
 
+    /**
+     * Copies everything written by {@link #write(DataOutputStream, StringMap)}, so that it can be encoded and compressed
+     * in parallel, off the main thread, with {@link SaveSnapshot#write(OutputStream)}.
+     */
+    public SaveSnapshot snapshot(StringMap extraTags) throws IOException{
+        SaveSnapshot snapshot = new SaveSnapshot(version, world.width(), world.height());
+        snapshot.meta = bytes(out -> writeMeta(out, extraTags == null ? new StringMap() : extraTags));
+        snapshot.contentHeader = bytes(this::writeContentHeader);
+
+        DataOutputStream entityData = new DataOutputStream(snapshot.entityData);
+        for(int i = 0; i < world.width() * world.height(); i++){
+            Tile tile = world.rawTile(i % world.width(), i / world.width());
+            snapshot.floors[i] = tile.floorID();
+            snapshot.overlays[i] = tile.overlayID();
+            snapshot.blocks[i] = tile.blockID();
+
+            if(tile.entity != null){
+                snapshot.entityOffsets.put(i, entityData.size());
+                writeChunk(entityData, true, out -> {
+                    out.writeByte(tile.entity.version());
+                    tile.entity.write(out);
+                });
+            }
+        }
+
+        snapshot.entities = bytes(this::writeEntities);
+        return snapshot;
+    }
+
+    private byte[] bytes(IORunner<DataOutput> runner) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        runner.accept(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
     public void writeMeta(DataOutput stream, StringMap tags) throws IOException{
         writeStringMap(stream, StringMap.of(
             "saved", Time.millis(),
@@ -161,19 +196,17 @@ public abstract class SaveVersion extends SaveFileReader{
 
             context.resize(width, height);
 
-            //read floor and create tiles first
+            //floors are read first, but tiles are only created once their block is known, so each is only initialized once
+            short[] floors = new short[width * height], overlays = new short[width * height];
             for(int i = 0; i < width * height; i++){
-                int x = i % width, y = i / width;
                 short floorid = stream.readShort();
                 short oreid = stream.readShort();
                 int consecutives = stream.readUnsignedByte();
                 if(content.block(floorid) == Blocks.air) floorid = Blocks.stone.id;
 
-                context.create(x, y, floorid, oreid, (short)0);
-
-                for(int j = i + 1; j < i + 1 + consecutives; j++){
-                    int newx = j % width, newy = j / width;
-                    context.create(newx, newy, floorid, oreid, (short)0);
+                for(int j = i; j < i + 1 + consecutives; j++){
+                    floors[j] = floorid;
+                    overlays[j] = oreid;
                 }
 
                 i += consecutives;
@@ -181,11 +214,9 @@ public abstract class SaveVersion extends SaveFileReader{
 
             //read blocks
             for(int i = 0; i < width * height; i++){
-                int x = i % width, y = i / width;
-                Block block = content.block(stream.readShort());
-                Tile tile = context.tile(x, y);
-                if(block == null) block = Blocks.air;
-                tile.setBlock(block);
+                short blockid = stream.readShort();
+                Block block = content.block(blockid);
+                Tile tile = createTile(context, i, width, floors, overlays, blockid, block);
 
                 if(tile.entity != null){
                     try{
@@ -200,8 +231,7 @@ public abstract class SaveVersion extends SaveFileReader{
                     int consecutives = stream.readUnsignedByte();
 
                     for(int j = i + 1; j < i + 1 + consecutives; j++){
-                        int newx = j % width, newy = j / width;
-                        context.tile(newx, newy).setBlock(block);
+                        createTile(context, j, width, floors, overlays, blockid, block);
                     }
 
                     i += consecutives;
@@ -212,6 +242,17 @@ public abstract class SaveVersion extends SaveFileReader{
         }
     }
 
+    private Tile createTile(WorldContext context, int index, int width, short[] floors, short[] overlays, short blockid, Block block){
+        int x = index % width, y = index / width;
+        if(block == null){
+            //unknown blocks become air
+            Tile tile = context.create(x, y, floors[index], overlays[index], 0);
+            tile.setBlock(Blocks.air);
+            return tile;
+        }
+        return context.create(x, y, floors[index], overlays[index], blockid);
+    }
+
     public void writeEntities(DataOutput stream) throws IOException{
         //write team data with entities.
         Array<TeamData> data = state.teams.getActive();
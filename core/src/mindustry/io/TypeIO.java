@@ -177,8 +177,7 @@ public class TypeIO{
 
     @WriteClass(Rules.class)
     public static void writeRules(ByteBuffer buffer, Rules rules){
-        String string = JsonIO.write(rules);
-        byte[] bytes = string.getBytes(charset);
+        byte[] bytes = RulesIO.write(rules);
         buffer.putInt(bytes.length);
         buffer.put(bytes);
     }
@@ -188,8 +187,7 @@ public class TypeIO{
         int length = buffer.getInt();
         byte[] bytes = new byte[length];
         buffer.get(bytes);
-        String string = new String(bytes, charset);
-        return JsonIO.read(Rules.class, string);
+        return RulesIO.read(bytes);
     }
 
     @WriteClass(Team.class)
@@ -2,7 +2,6 @@ package mindustry.maps;
 
 import arc.*;
 import arc.assets.*;
-import arc.assets.loaders.*;
 import arc.struct.*;
 import arc.struct.IntSet.*;
 import arc.files.*;
@@ -15,7 +14,6 @@ import arc.util.io.*;
 import arc.util.serialization.*;
 import mindustry.*;
 import mindustry.content.*;
-import mindustry.ctype.*;
 import mindustry.game.EventType.*;
 import mindustry.game.*;
 import mindustry.io.*;
@@ -25,12 +23,15 @@ import mindustry.world.*;
 import mindustry.world.blocks.storage.*;
 
 import java.io.*;
+import java.util.zip.*;
 
 import static mindustry.Vars.*;
 
 public class Maps{
     /** List of all built-in maps. Filenames only. */
     private static String[] defaultMapNames = {"maze", "fortress", "labyrinth", "islands", "tendrils", "caldera", "wasteland", "shattered", "fork", "triad", "veins", "glacier"};
+    /** Version of preview cache files. Caches with a different version are regenerated. */
+    private static final int cacheVersion = 1;
     /** All maps stored in an ordered array. */
     private Array<Map> maps = new Array<>();
     /** Serializer for meta. */
@@ -40,7 +41,12 @@ public class Maps{
     private @Nullable MapProvider shuffler;
 
     private AsyncExecutor executor = new AsyncExecutor(2);
+    /** Maps without a valid cached preview, waiting for content to load before their previews are generated. */
     private ObjectSet<Map> previewList = new ObjectSet<>();
+    /** Maps whose previews are being generated in the background. */
+    private ObjectSet<Map> pendingPreviews = new ObjectSet<>();
+    /** Whether content has loaded, so previews can be generated. */
+    private boolean previewsEnabled;
 
     public ShuffleMode getShuffleMode(){
         return shuffleMode;
@@ -81,6 +87,8 @@ public class Maps{
 
     public Maps(){
         Events.on(ClientLoadEvent.class, event -> {
+            previewsEnabled = true;
+            generateQueuedPreviews();
             maps.sort();
         });
 
@@ -88,17 +96,18 @@ public class Maps{
             reload();
             for(Map map : maps){
                 try{
-                    map.texture = map.previewFile().exists() ? new Texture(map.previewFile()) : new Texture(MapIO.generatePreview(map));
-                    readCache(map);
+                    if(map.previewFile().exists() && readCache(map)){
+                        map.texture = new Texture(map.previewFile());
+                    }else{
+                        previewList.add(map);
+                    }
                 }catch(Exception e){
                     e.printStackTrace();
+                    previewList.add(map);
                 }
             }
+            generateQueuedPreviews();
         });
-
-        if(Core.assets != null){
-            ((CustomLoader) Core.assets.getLoader(Content.class)).loaded = this::createAllPreviews;
-        }
     }
 
     /**
@@ -171,6 +180,8 @@ public class Maps{
             }
         }
         maps.clear();
+        previewList.clear();
+        pendingPreviews.clear();
         load();
     }
 
@@ -196,6 +207,8 @@ public class Maps{
                     other.texture = null;
                 }
                 maps.remove(other);
+                previewList.remove(other);
+                pendingPreviews.remove(other);
                 file = other.file;
             }else{
                 file = findFile();
@@ -293,6 +306,8 @@ public class Maps{
         }
 
         maps.remove(map);
+        previewList.remove(map);
+        pendingPreviews.remove(map);
         map.file.delete();
     }
 
@@ -373,34 +388,74 @@ public class Maps{
     public void loadPreviews(){
 
         for(Map map : maps){
-            //try to load preview
-            if(map.previewFile().exists()){
-                //this may fail, but calls queueNewPreview
-                Core.assets.load(new AssetDescriptor<>(map.previewFile().path() + "." + mapExtension, Texture.class, new MapPreviewParameter(map))).loaded = t -> map.texture = (Texture)t;
-
-                try{
-                    readCache(map);
-                }catch(Exception e){
-                    e.printStackTrace();
+            try{
+                //only use the stored preview if it was generated from this exact file
+                if(map.previewFile().exists() && readCache(map)){
+                    //this may fail, but calls queueNewPreview
+                    Core.assets.load(new AssetDescriptor<>(map.previewFile().path() + "." + mapExtension, Texture.class, new MapPreviewParameter(map))).loaded = t -> map.texture = (Texture)t;
+                }else{
                     queueNewPreview(map);
                 }
-            }else{
+            }catch(Exception e){
+                e.printStackTrace();
                 queueNewPreview(map);
             }
         }
     }
 
-    private void createAllPreviews(){
+    /** Marks the preview of this map as outdated. It is regenerated in the background once content has loaded. */
+    public void queueNewPreview(Map map){
         Core.app.post(() -> {
-            for(Map map : previewList){
-                createNewPreview(map, e -> Core.app.post(() -> map.texture = Core.assets.get("sprites/error.png")));
-            }
-            previewList.clear();
+            previewList.add(map);
+            generateQueuedPreviews();
         });
     }
 
-    public void queueNewPreview(Map map){
-        Core.app.post(() -> previewList.add(map));
+    /**
+     * Generates the previews, spawns and teams of all queued maps in the background, if content has loaded.
+     * Each map file is read once for all three, as a map without a valid cache needs a new preview too.
+     */
+    private void generateQueuedPreviews(){
+        if(!previewsEnabled) return;
+
+        for(Map map : previewList){
+            if(pendingPreviews.add(map)){
+                executor.submit(() -> {
+                    GeneratedPreview preview = new GeneratedPreview(map);
+                    Core.app.post(() -> applyPreview(map, preview));
+                });
+            }
+        }
+        previewList.clear();
+    }
+
+    /** Applies a preview generated in the background, unless its map was removed or reloaded since. */
+    private void applyPreview(Map map, GeneratedPreview preview){
+        if(!pendingPreviews.remove(map)){
+            if(preview.pixmap != null) preview.pixmap.dispose();
+            return;
+        }
+
+        if(preview.error != null){
+            map.texture = Core.assets.get("sprites/error.png");
+            Log.err("Failed to generate preview!", preview.error);
+            return;
+        }
+
+        Pixmap pix = preview.pixmap;
+        map.spawns = preview.spawns;
+        map.teams = preview.teams;
+        map.texture = new Texture(pix);
+        //the order of maps depends on their teams
+        maps.sort();
+        executor.submit(() -> {
+            try{
+                map.previewFile().writePNG(pix);
+                writeCache(map);
+            }catch(Exception e){
+                e.printStackTrace();
+            }
+        });
     }
 
     private void createNewPreview(Map map, Cons<Exception> failed){
@@ -425,7 +480,8 @@ public class Maps{
 
     private void writeCache(Map map) throws IOException{
         try(DataOutputStream stream = new DataOutputStream(map.cacheFile().write(false, Streams.DEFAULT_BUFFER_SIZE))){
-            stream.write(0);
+            stream.write(cacheVersion);
+            stream.writeLong(checksum(map.file));
             stream.writeInt(map.spawns);
             stream.write(map.teams.size);
             IntSetIterator iter = map.teams.iterator();
@@ -435,14 +491,57 @@ public class Maps{
         }
     }
 
-    private void readCache(Map map) throws IOException{
+    /** @return whether the cache of this map was read; false if it is missing, outdated, or was written for a different file. */
+    private boolean readCache(Map map) throws IOException{
+        if(!map.cacheFile().exists()) return false;
+
         try(DataInputStream stream = new DataInputStream(map.cacheFile().read(Streams.DEFAULT_BUFFER_SIZE))){
-            stream.read(); //version
+            if(stream.read() != cacheVersion || stream.readLong() != checksum(map.file)){
+                return false;
+            }
+
             map.spawns = stream.readInt();
+            map.teams.clear();
             int teamsize = stream.readByte();
             for(int i = 0; i < teamsize; i++){
                 map.teams.add(stream.read());
             }
+            return true;
+        }
+    }
+
+    /** @return the CRC32 of this file's contents. */
+    private static long checksum(Fi file) throws IOException{
+        CRC32 crc = new CRC32();
+
+        try(InputStream stream = file.read(Streams.DEFAULT_BUFFER_SIZE)){
+            byte[] buffer = new byte[Streams.DEFAULT_BUFFER_SIZE];
+            int read;
+            while((read = stream.read(buffer)) != -1){
+                crc.update(buffer, 0, read);
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    /** Preview, spawns and teams of a map, generated off the main thread without modifying the map itself. */
+    private static class GeneratedPreview{
+        final int spawns;
+        final IntSet teams;
+        @Nullable Pixmap pixmap;
+        @Nullable Exception error;
+
+        GeneratedPreview(Map map){
+            //read into a copy, as the main thread may be reading the spawns and teams of the original
+            Map copy = new Map(map.file, map.width, map.height, map.tags, map.custom, map.version, map.build);
+            try{
+                pixmap = MapIO.generatePreview(copy);
+            }catch(Exception e){
+                error = e;
+            }
+            spawns = copy.spawns;
+            teams = copy.teams;
         }
     }
 
@@ -19,11 +19,19 @@ import static mindustry.game.EventType.*;
 public class Administration{
     /** All player info. Maps UUIDs to info. This persists throughout restarts. */
     private ObjectMap<String, PlayerInfo> playerInfo = new ObjectMap<>();
+    /** Maps IPs to every player that has used them. */
+    private ObjectMap<String, Array<PlayerInfo>> infosByIP = new ObjectMap<>();
+    /** Maps lowercase names, with and without colors, to every player that has used them. */
+    private ObjectMap<String, Array<PlayerInfo>> infosByName = new ObjectMap<>();
+    private PlayerStore store;
     private Array<String> bannedIPs = new Array<>();
     private Array<String> whitelist = new Array<>();
     private Array<ChatFilter> chatFilters = new Array<>();
     private Array<ActionFilter> actionFilters = new Array<>();
     private Array<String> subnetBans = new Array<>();
+    /** Lookup structures for the ban lists above, rebuilt whenever they change. */
+    private ObjectSet<String> bannedIPSet = new ObjectSet<>();
+    private IPMatcher subnetMatcher = new IPMatcher(subnetBans);
 
     public Administration(){
         load();
@@ -66,16 +74,18 @@ public class Administration{
 
     public void removeSubnetBan(String ip){
         subnetBans.remove(ip);
+        updateBans();
         save();
     }
 
     public void addSubnetBan(String ip){
         subnetBans.add(ip);
+        updateBans();
         save();
     }
 
     public boolean isSubnetBanned(String ip){
-        return subnetBans.contains(ip::startsWith);
+        return subnetMatcher.matches(ip);
     }
 
     /** Adds a chat filter. This will transform the chat messages of every player.
@@ -138,6 +148,13 @@ public class Administration{
         info.timesJoined++;
         if(!info.names.contains(name, false)) info.names.add(name);
         if(!info.ips.contains(ip, false)) info.ips.add(ip);
+        modified(info);
+    }
+
+    /** Call after changing the fields of player info directly, so the change is indexed and persisted. */
+    public void modified(PlayerInfo info){
+        index(info);
+        store.modified(info);
     }
 
     public boolean banPlayer(String uuid){
@@ -149,16 +166,16 @@ public class Administration{
      * If there are players who at any point had this IP, they will be UUID banned as well.
      */
     public boolean banPlayerIP(String ip){
-        if(bannedIPs.contains(ip, false))
+        if(bannedIPSet.contains(ip))
             return false;
 
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                info.banned = true;
-            }
+        for(PlayerInfo info : infos(infosByIP, ip)){
+            info.banned = true;
+            store.modified(info);
         }
 
         bannedIPs.add(ip);
+        updateBans();
         save();
         Events.fire(new PlayerIpBanEvent(ip));
         return true;
@@ -169,7 +186,9 @@ public class Administration{
         if(playerInfo.containsKey(id) && playerInfo.get(id).banned)
             return false;
 
-        getCreateInfo(id).banned = true;
+        PlayerInfo info = getCreateInfo(id);
+        info.banned = true;
+        store.modified(info);
 
         save();
         Events.fire(new PlayerBanEvent(Vars.playerGroup.find(p -> id.equals(p.uuid))));
@@ -183,14 +202,14 @@ public class Administration{
     public boolean unbanPlayerIP(String ip){
         boolean found = bannedIPs.contains(ip, false);
 
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                info.banned = false;
-                found = true;
-            }
+        for(PlayerInfo info : infos(infosByIP, ip)){
+            info.banned = false;
+            store.modified(info);
+            found = true;
         }
 
         bannedIPs.remove(ip, false);
+        updateBans();
 
         if(found){
             save();
@@ -211,6 +230,8 @@ public class Administration{
 
         info.banned = false;
         bannedIPs.removeAll(info.ips, false);
+        updateBans();
+        store.modified(info);
         save();
         Events.fire(new PlayerUnbanEvent(Vars.playerGroup.find(p -> id.equals(p.uuid))));
         return true;
@@ -260,7 +281,7 @@ public class Administration{
 
         info.adminUsid = usid;
         info.admin = true;
-        save();
+        store.modified(info);
 
         return true;
     }
@@ -275,7 +296,7 @@ public class Administration{
             return false;
 
         info.admin = false;
-        save();
+        store.modified(info);
 
         return true;
     }
@@ -307,7 +328,9 @@ public class Administration{
     }
 
     public boolean isIPBanned(String ip){
-        return bannedIPs.contains(ip, false) || (findByIP(ip) != null && findByIP(ip).banned);
+        if(bannedIPSet.contains(ip)) return true;
+        PlayerInfo info = findByIP(ip);
+        return info != null && info.banned;
     }
 
     public boolean isIDBanned(String uuid){
@@ -323,14 +346,19 @@ public class Administration{
     public ObjectSet<PlayerInfo> findByName(String name){
         ObjectSet<PlayerInfo> result = new ObjectSet<>();
 
-        for(PlayerInfo info : playerInfo.values()){
+        //the indices only narrow down candidates; matches are still checked exactly
+        for(PlayerInfo info : infos(infosByName, name.toLowerCase())){
             if(info.lastName.equalsIgnoreCase(name) || (info.names.contains(name, false))
-            || Strings.stripColors(Strings.stripColors(info.lastName)).equals(name)
-            || info.ips.contains(name, false) || info.id.equals(name)){
+            || Strings.stripColors(Strings.stripColors(info.lastName)).equals(name)){
                 result.add(info);
             }
         }
 
+        result.addAll(infos(infosByIP, name));
+
+        PlayerInfo byID = playerInfo.get(name);
+        if(byID != null) result.add(byID);
+
         return result;
     }
 
@@ -348,15 +376,7 @@ public class Administration{
     }
 
     public Array<PlayerInfo> findByIPs(String ip){
-        Array<PlayerInfo> result = new Array<>();
-
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                result.add(info);
-            }
-        }
-
-        return result;
+        return new Array<>(infos(infosByIP, ip));
     }
 
     public PlayerInfo getInfo(String id){
@@ -368,12 +388,8 @@ public class Administration{
     }
 
     public PlayerInfo findByIP(String ip){
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                return info;
-            }
-        }
-        return null;
+        Array<PlayerInfo> infos = infosByIP.get(ip);
+        return infos == null ? null : infos.first();
     }
 
     public Array<PlayerInfo> getWhitelisted(){
@@ -386,25 +402,90 @@ public class Administration{
         }else{
             PlayerInfo info = new PlayerInfo(id);
             playerInfo.put(id, info);
-            save();
+            modified(info);
             return info;
         }
     }
 
+    /** Rebuilds the ban lookup structures. Call after modifying the ban lists. */
+    private void updateBans(){
+        bannedIPSet = new ObjectSet<>();
+        bannedIPSet.addAll(bannedIPs);
+        subnetMatcher = new IPMatcher(subnetBans);
+    }
+
+    private Array<PlayerInfo> infos(ObjectMap<String, Array<PlayerInfo>> index, String key){
+        Array<PlayerInfo> infos = index.get(key);
+        return infos == null ? Array.with() : infos;
+    }
+
+    /** Adds all names and IPs of this player to the lookup indices. Nothing is ever removed, as players never lose names or IPs. */
+    private void index(PlayerInfo info){
+        for(String ip : info.ips){
+            index(infosByIP, ip, info);
+        }
+
+        for(String name : info.names){
+            index(infosByName, name.toLowerCase(), info);
+        }
+
+        index(infosByName, info.lastName.toLowerCase(), info);
+        index(infosByName, Strings.stripColors(info.lastName).toLowerCase(), info);
+    }
+
+    private void index(ObjectMap<String, Array<PlayerInfo>> index, String key, PlayerInfo info){
+        Array<PlayerInfo> infos = index.get(key);
+        if(infos == null){
+            index.put(key, infos = new Array<>(1));
+        }
+        if(!infos.contains(info, true)){
+            infos.add(info);
+        }
+    }
+
+    /** Saves the ban and whitelist lists, and schedules modified player info to be written. */
     public void save(){
-        Core.settings.putObject("player-info", playerInfo);
         Core.settings.putObject("banned-ips", bannedIPs);
         Core.settings.putObject("whitelisted", whitelist);
         Core.settings.putObject("subnet-bans", subnetBans);
         Core.settings.save();
+        store.flush();
+    }
+
+    /** Writes all pending player info. Call before exiting. */
+    public void dispose(){
+        store.dispose();
     }
 
     @SuppressWarnings("unchecked")
     private void load(){
-        playerInfo = Core.settings.getObject("player-info", ObjectMap.class, ObjectMap::new);
+        store = new PlayerStore(Core.settings.getDataDirectory().child("players.dat"));
+        playerInfo = store.load();
+
+        //migrate player info that was previously stored as one large settings entry
+        if(Core.settings.has("player-info")){
+            ObjectMap<String, PlayerInfo> legacy = Core.settings.getObject("player-info", ObjectMap.class, ObjectMap::new);
+            for(PlayerInfo info : legacy.values()){
+                if(!playerInfo.containsKey(info.id)){
+                    playerInfo.put(info.id, info);
+                    store.modified(info);
+                }
+            }
+            //the old entry may only be removed once its contents are safely on disk
+            store.flushNow();
+            Core.settings.remove("player-info");
+            Core.settings.save();
+            Log.info("Migrated {0} players to the player store.", legacy.size);
+        }
+
+        for(PlayerInfo info : playerInfo.values()){
+            index(info);
+        }
+
         bannedIPs = Core.settings.getObject("banned-ips", Array.class, Array::new);
         whitelist = Core.settings.getObject("whitelisted", Array.class, Array::new);
         subnetBans = Core.settings.getObject("subnet-bans", Array.class, Array::new);
+        updateBans();
     }
 
     /** Server configuration definition. Each config value can be a string, boolean or number. */
@@ -427,6 +508,11 @@ public class Administration{
         socketInputAddress("The bind address for socket input.", "localhost", () -> Events.fire(Trigger.socketConfigChanged)),
         allowCustomClients("Whether custom clients are allowed to connect.", !headless, "allow-custom"),
         whitelist("Whether the whitelist is used.", false),
+        pathfinderThreads("Amount of threads used to update flow fields in parallel. Applies on the next map load.", 1),
+        deltaBlockSync("Whether block snapshots only contain blocks that changed since the last snapshot sent to each player.", true),
+        parallelBlockUpdates("Whether blocks that support it compute their updates on multiple threads.", false),
+        incrementalPower("Whether power graphs keep running totals that blocks update as they change, instead of summing all blocks on every update.", false),
+        syncInterest("Whether entities far from a player's view are only synced to them at a reduced rate.", false),
         motd("The message displayed to people on connection.", "off");
 
         public static final Config[] all = values();
@@ -16,15 +16,26 @@ import java.net.*;
 import java.nio.*;
 import java.nio.channels.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import static mindustry.Vars.*;
 
 public class ArcNetProvider implements NetProvider{
+    /** Maximum amount of packets that can be queued for a connection before it is disconnected. */
+    static final int maxQueuedPackets = 2048;
+
     final Client client;
     final Prov<DatagramPacket> packetSupplier = () -> new DatagramPacket(new byte[512], 512);
 
     final Server server;
-    final CopyOnWriteArrayList<ArcConnection> connections = new CopyOnWriteArrayList<>();
+    /**
+     * Maps arc connection IDs to connections. Updated in place on connect and disconnect;
+     * lookups from the network thread don't lock, and the main thread iterates its live values view.
+     */
+    final ConcurrentHashMap<Integer, ArcConnection> connections = new ConcurrentHashMap<>();
+    /** Whether a task to handle queued server packets has been posted to the main thread. */
+    final AtomicBoolean dispatchPosted = new AtomicBoolean();
+    final Runnable dispatcher = this::dispatchServerPackets;
     Thread serverThread;
 
     public ArcNetProvider(){
@@ -87,8 +98,8 @@ public class ArcNetProvider implements NetProvider{
 
                 Log.debug("&bRecieved connection: {0}", c.addressTCP);
 
-                connections.add(kn);
-                Core.app.post(() -> net.handleServerReceived(kn, c));
+                connections.put(connection.getID(), kn);
+                kn.enqueue(c);
             }
 
             @Override
@@ -99,10 +110,8 @@ public class ArcNetProvider implements NetProvider{
                 Disconnect c = new Disconnect();
                 c.reason = reason.toString();
 
-                Core.app.post(() -> {
-                    net.handleServerReceived(k, c);
-                    connections.remove(k);
-                });
+                //the connection is removed once this is handled, after all packets queued before it
+                k.enqueue(c);
             }
 
             @Override
@@ -110,15 +119,15 @@ public class ArcNetProvider implements NetProvider{
                 ArcConnection k = getByArcID(connection.getID());
                 if(object instanceof FrameworkMessage || k == null) return;
 
-                Core.app.post(() -> {
-                    try{
-                        net.handleServerReceived(k, object);
-                    }catch(RuntimeException e){
-                        e.printStackTrace();
-                    }catch(Exception e){
-                        e.printStackTrace();
-                    }
-                });
+                if(k.queued.get() >= maxQueuedPackets){
+                    //the main thread can't keep up with this client; drop it instead of letting the queue grow
+                    Log.warn("&lyConnection {0} has exceeded the packet queue limit of {1}. Disconnecting.", k.address, maxQueuedPackets);
+                    Pools.free(object);
+                    connection.close(DcReason.error);
+                    return;
+                }
+
+                k.enqueue(object);
             }
         });
     }
@@ -231,7 +240,7 @@ public class ArcNetProvider implements NetProvider{
 
     @Override
     public Iterable<ArcConnection> getConnections(){
-        return connections;
+        return connections.values();
     }
 
     @Override
@@ -256,15 +265,35 @@ public class ArcNetProvider implements NetProvider{
         Threads.daemon(server::stop);
     }
 
-    ArcConnection getByArcID(int id){
-        for(int i = 0; i < connections.size(); i++){
-            ArcConnection con = connections.get(i);
-            if(con.connection != null && con.connection.getID() == id){
-                return con;
+    /** Handles all packets that have been queued by the network thread. Runs on the main thread, at most once per frame. */
+    void dispatchServerPackets(){
+        //reset first, so that packets arriving during dispatch schedule another pass
+        dispatchPosted.set(false);
+
+        for(ArcConnection con : connections.values()){
+            //only handle what was queued before this pass started, so a flooding client can't stall the frame
+            int amount = con.queued.get();
+            for(int i = 0; i < amount; i++){
+                Object object = con.inbound.poll();
+                if(object == null) break;
+                con.queued.decrementAndGet();
+
+                try{
+                    net.handleServerReceived(con, object);
+                }catch(Exception e){
+                    e.printStackTrace();
+                }
+
+                if(object instanceof Disconnect){
+                    //only remove this connection, not a newer one that reused its ID
+                    connections.remove(con.connection.getID(), con);
+                }
             }
         }
+    }
 
-        return null;
+    ArcConnection getByArcID(int id){
+        return connections.get(id);
     }
 
     private void handleException(Exception e){
@@ -279,6 +308,9 @@ public class ArcNetProvider implements NetProvider{
 
     class ArcConnection extends NetConnection{
         public final Connection connection;
+        /** Packets recieved on the network thread, waiting to be handled on the main thread. */
+        final ConcurrentLinkedQueue<Object> inbound = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
 
         public ArcConnection(String address, Connection connection){
             super(address);
@@ -290,6 +322,21 @@ public class ArcNetProvider implements NetProvider{
             return connection.isConnected();
         }
 
+        @Override
+        public int queuedPackets(){
+            return queued.get();
+        }
+
+        /** Queues a packet to be handled on the main thread. Called from the network thread. */
+        void enqueue(Object object){
+            inbound.add(object);
+            peakQueuedPackets = Math.max(peakQueuedPackets, queued.incrementAndGet());
+
+            if(dispatchPosted.compareAndSet(false, true)){
+                Core.app.post(dispatcher);
+            }
+        }
+
         @Override
         public void sendStream(Streamable stream){
             connection.addListener(new InputStreamSender(stream.stream, 512){
@@ -326,10 +373,8 @@ public class ArcNetProvider implements NetProvider{
             }catch(Exception e){
                 Log.err(e);
                 Log.info("Error sending packet. Disconnecting invalid client!");
+                //the disconnect listener queues a Disconnect, which removes this connection once it is handled
                 connection.close(DcReason.error);
-
-                ArcConnection k = getByArcID(connection.getID());
-                if(k != null) connections.remove(k);
             }
         }
 
@@ -0,0 +1,200 @@
+package mindustry.net;
+
+import arc.struct.*;
+import arc.util.ArcAnnotate.*;
+
+/**
+ * Matches addresses against a set of ban entries in time proportional to the address length, regardless of the amount of entries.
+ * Entries are either CIDR ranges such as <code>10.0.0.0/8</code>, or plain prefixes such as <code>192.168.</code>,
+ * which match every address starting with them.
+ * Not thread-safe; rebuild it from scratch when the entries change.
+ */
+public class IPMatcher{
+    /** Trie of the characters of plain prefixes. */
+    private final Trie prefixes = new Trie();
+    /** Trie of the bits of CIDR ranges, starting with one bit for the address family. */
+    private final Trie ranges = new Trie();
+
+    public IPMatcher(Iterable<String> entries){
+        for(String entry : entries){
+            add(entry);
+        }
+    }
+
+    public void add(String entry){
+        int slash = entry.indexOf('/');
+        if(slash != -1){
+            byte[] address = parse(entry.substring(0, slash));
+            int bits = parseInt(entry.substring(slash + 1));
+
+            if(address != null && bits >= 0 && bits <= address.length * 8){
+                int node = ranges.child(0, address.length == 4 ? 0 : 1, true);
+                for(int i = 0; i < bits; i++){
+                    node = ranges.child(node, bit(address, i), true);
+                }
+                ranges.terminals.add(node);
+                return;
+            }
+        }
+
+        //anything that is not a valid range is matched as text, like subnet bans always were
+        int node = 0;
+        for(int i = 0; i < entry.length(); i++){
+            char c = entry.charAt(i);
+            //addresses never contain these characters, so the entry can never match
+            if(c >= 256) return;
+            node = prefixes.child(node, c, true);
+        }
+        prefixes.terminals.add(node);
+    }
+
+    /** @return whether this address matches any entry. */
+    public boolean matches(String ip){
+        if(prefixes.terminals.isEmpty() && ranges.terminals.isEmpty()) return false;
+
+        int node = 0;
+        for(int i = 0; ; i++){
+            if(prefixes.terminals.contains(node)) return true;
+            if(i >= ip.length() || ip.charAt(i) >= 256) break;
+            node = prefixes.child(node, ip.charAt(i), false);
+            if(node == -1) break;
+        }
+
+        if(ranges.terminals.isEmpty()) return false;
+
+        byte[] address = parse(ip);
+        if(address == null) return false;
+
+        node = ranges.child(0, address.length == 4 ? 0 : 1, false);
+        for(int i = 0; node != -1; i++){
+            if(ranges.terminals.contains(node)) return true;
+            if(i >= address.length * 8) break;
+            node = ranges.child(node, bit(address, i), false);
+        }
+
+        return false;
+    }
+
+    private static int bit(byte[] address, int index){
+        return (address[index / 8] >>> (7 - index % 8)) & 1;
+    }
+
+    private static int parseInt(String text){
+        try{
+            return Integer.parseInt(text);
+        }catch(NumberFormatException e){
+            return -1;
+        }
+    }
+
+    /** @return the bytes of a numeric IPv4 or IPv6 address, or null if this is not one. Never performs a DNS lookup. */
+    static @Nullable byte[] parse(String ip){
+        if(ip.indexOf(':') == -1){
+            String[] parts = ip.split("\\.", -1);
+            if(parts.length != 4) return null;
+
+            byte[] result = new byte[4];
+            for(int i = 0; i < 4; i++){
+                if(parts[i].isEmpty() || parts[i].length() > 3) return null;
+                int value = parseInt(parts[i]);
+                if(value < 0 || value > 255) return null;
+                result[i] = (byte)value;
+            }
+            return result;
+        }
+
+        //strip the scope ID of link-local addresses
+        int scope = ip.indexOf('%');
+        if(scope != -1) ip = ip.substring(0, scope);
+
+        //parsed by hand, as InetAddress falls back to a DNS lookup for anything that is not a valid literal
+        int gap = ip.indexOf("::");
+        if(gap != -1 && ip.indexOf("::", gap + 1) != -1) return null;
+
+        IntArray head = new IntArray(8), tail = new IntArray(8);
+        if(gap == -1){
+            if(!parseGroups(ip, true, head) || head.size != 8) return null;
+        }else{
+            //:: stands for at least one group of zeroes
+            if(!parseGroups(ip.substring(0, gap), false, head) || !parseGroups(ip.substring(gap + 2), true, tail) || head.size + tail.size > 7) return null;
+        }
+
+        byte[] result = new byte[16];
+        for(int i = 0; i < head.size; i++){
+            putGroup(result, i, head.get(i));
+        }
+        for(int i = 0; i < tail.size; i++){
+            putGroup(result, 8 - tail.size + i, tail.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Parses colon-separated groups of up to four hex digits. If allowed, the last one may be an IPv4 address, which counts as two groups.
+     * @return whether the text was valid.
+     */
+    private static boolean parseGroups(String text, boolean allowIPv4, IntArray out){
+        if(text.isEmpty()) return true;
+
+        String[] parts = text.split(":", -1);
+        for(int i = 0; i < parts.length; i++){
+            String part = parts[i];
+
+            if(allowIPv4 && i == parts.length - 1 && part.indexOf('.') != -1){
+                byte[] address = parse(part);
+                if(address == null || address.length != 4) return false;
+                out.add(((address[0] & 0xff) << 8) | (address[1] & 0xff));
+                out.add(((address[2] & 0xff) << 8) | (address[3] & 0xff));
+                continue;
+            }
+
+            if(part.isEmpty() || part.length() > 4) return false;
+            int value = 0;
+            for(int j = 0; j < part.length(); j++){
+                char c = part.charAt(j);
+                int digit = c >= '0' && c <= '9' ? c - '0' : c >= 'a' && c <= 'f' ? c - 'a' + 10 : c >= 'A' && c <= 'F' ? c - 'A' + 10 : -1;
+                if(digit == -1) return false;
+                value = value * 16 + digit;
+            }
+            out.add(value);
+        }
+        return true;
+    }
+
+    private static void putGroup(byte[] address, int index, int value){
+        address[index * 2] = (byte)(value >>> 8);
+        address[index * 2 + 1] = (byte)value;
+    }
+
+    /**
+     * Trie with numbered nodes; node 0 is the root.
+     * The children of each node are kept in a linked list, since addresses only use a few symbols, so no key can overflow.
+     */
+    private static class Trie{
+        /** First child, next sibling and symbol of each node, or -1 if there is none. */
+        final IntArray firstChild = new IntArray(), nextSibling = new IntArray(), symbols = new IntArray();
+        final IntSet terminals = new IntSet();
+
+        Trie(){
+            firstChild.add(-1);
+            nextSibling.add(-1);
+            symbols.add(-1);
+        }
+
+        /** @return the child of a node along this symbol, or -1 if it does not exist and should not be created. */
+        int child(int node, int symbol, boolean create){
+            for(int child = firstChild.get(node); child != -1; child = nextSibling.get(child)){
+                if(symbols.get(child) == symbol) return child;
+            }
+
+            if(!create) return -1;
+
+            int child = symbols.size;
+            symbols.add(symbol);
+            firstChild.add(-1);
+            nextSibling.add(firstChild.get(node));
+            firstChild.set(node, child);
+            return child;
+        }
+    }
+}
@@ -26,9 +26,23 @@ public abstract class NetConnection{
     /** Build requests that have been recently rejected. This is cleared every snapshot. */
     public Array<BuildRequest> rejectedRequests = new Array<>();
 
+    /** Largest amount of recieved packets that were waiting to be handled at once. */
+    public volatile int peakQueuedPackets;
+
     public boolean hasConnected, hasBegunConnecting, hasDisconnected;
     public float viewWidth, viewHeight, viewX, viewY;
 
+    /** IDs of entities that were inside this connection's view on the last entity snapshot. */
+    public IntSet syncInterest = new IntSet();
+    /** IDs of entities inside this connection's view on the snapshot being written. Swapped with {@link #syncInterest} afterwards. */
+    public IntSet nextSyncInterest = new IntSet();
+    /** Amount of entity snapshots written to this connection. */
+    public int entitySnapshots;
+    /** Maps tile positions to hashes of the block data last sent to this connection. */
+    public IntIntMap blockSyncHashes = new IntIntMap();
+    /** Amount of block snapshots written to this connection since the world was last sent. */
+    public int blockSnapshots;
+
     public NetConnection(String address){
         this.address = address;
     }
@@ -41,13 +55,12 @@ public abstract class NetConnection{
             PlayerInfo info = netServer.admins.getInfo(player.uuid);
             info.timesKicked++;
             info.lastKicked = Math.max(Time.millis() + 30 * 1000, info.lastKicked);
+            netServer.admins.modified(info);
         }
 
         Call.onKick(this, reason);
 
         Time.runTask(2f, this::close);
-
-        netServer.admins.save();
     }
 
     /** Kick with an arbitrary reason. */
@@ -63,19 +76,23 @@ public abstract class NetConnection{
             PlayerInfo info = netServer.admins.getInfo(player.uuid);
             info.timesKicked++;
             info.lastKicked = Math.max(Time.millis() + kickDuration, info.lastKicked);
+            netServer.admins.modified(info);
         }
 
         Call.onKick(this, reason);
 
         Time.runTask(2f, this::close);
-
-        netServer.admins.save();
     }
 
     public boolean isConnected(){
         return true;
     }
 
+    /** @return the amount of recieved packets that are waiting to be handled. */
+    public int queuedPackets(){
+        return 0;
+    }
+
     public void sendStream(Streamable stream){
         try{
             int cid;
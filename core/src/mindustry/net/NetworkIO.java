@@ -11,37 +11,58 @@ import mindustry.net.Administration.*;
 import java.io.*;
 import java.nio.*;
 import java.util.*;
+import java.util.zip.*;
 
 import static mindustry.Vars.*;
 
 public class NetworkIO{
+    /**
+     * Format of world data, written as its first byte. Bumped whenever the layout changes.
+     * World data used to be a single compressed stream, which starts with a zlib header byte instead.
+     */
+    private static final int worldFormat = 1;
 
-    public static void writeWorld(Player player, OutputStream os){
+    /** Writes the part of the world data that is the same for every player. This is compressed and shared between players. */
+    public static void writeWorld(OutputStream os){
 
         try(DataOutputStream stream = new DataOutputStream(os)){
-            stream.writeUTF(JsonIO.write(state.rules));
+            RulesIO.write(stream, state.rules);
             SaveIO.getSaveWriter().writeStringMap(stream, world.getMap().tags);
 
+            SaveIO.getSaveWriter().writeContentHeader(stream);
+            SaveIO.getSaveWriter().writeMap(stream);
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Writes the part of the world data that is specific to one player, starting with its format. This is sent uncompressed, before the shared data. */
+    public static void writePlayer(Player player, OutputStream os){
+
+        try(DataOutputStream stream = new DataOutputStream(os)){
+            stream.write(worldFormat);
             stream.writeInt(state.wave);
             stream.writeFloat(state.wavetime);
 
             stream.writeInt(player.id);
             player.write(stream);
-
-            SaveIO.getSaveWriter().writeContentHeader(stream);
-            SaveIO.getSaveWriter().writeMap(stream);
         }catch(IOException e){
             throw new RuntimeException(e);
         }
     }
 
+    /** Loads world data written by {@link #writePlayer(Player, OutputStream)}, followed by the compressed data of {@link #writeWorld(OutputStream)}. */
     public static void loadWorld(InputStream is){
 
-        try(DataInputStream stream = new DataInputStream(is)){
-            Time.clear();
-            state.rules = JsonIO.read(Rules.class, stream.readUTF());
-            world.setMap(new Map(SaveIO.getSaveWriter().readStringMap(stream)));
+        //the player data is not buffered, so the compressed data starts exactly where it ends
+        try(DataInputStream stream = new DataInputStream(is);
+            DataInputStream data = new DataInputStream(new InflaterInputStream(is))){
+            int format = stream.read();
+            if(format != worldFormat){
+                throw new IOException("Incompatible world data format: " + format + ", expected " + worldFormat + ". The server is running a different version.");
+            }
 
+            Time.clear();
             state.wave = stream.readInt();
             state.wavetime = stream.readFloat();
 
@@ -52,8 +73,11 @@ public class NetworkIO{
             player.resetID(id);
             player.add();
 
-            SaveIO.getSaveWriter().readContentHeader(stream);
-            SaveIO.getSaveWriter().readMap(stream, world.context);
+            state.rules = RulesIO.read(data);
+            world.setMap(new Map(SaveIO.getSaveWriter().readStringMap(data)));
+
+            SaveIO.getSaveWriter().readContentHeader(data);
+            SaveIO.getSaveWriter().readMap(data, world.context);
         }catch(IOException e){
             throw new RuntimeException(e);
         }finally{
@@ -70,14 +70,28 @@ public class Packets{
         public ByteBuffer writeBuffer;
         public int writeLength;
 
+        /** Buffer that received data is copied into. Kept when this packet is pooled, so reading does not allocate. */
+        private ByteBuffer readBuffer;
+
         @Override
         public void read(ByteBuffer buffer){
             type = buffer.get();
             priority = buffer.get();
             writeLength = buffer.getShort();
-            byte[] bytes = new byte[writeLength];
-            buffer.get(bytes);
-            writeBuffer = ByteBuffer.wrap(bytes);
+
+            if(readBuffer == null || readBuffer.capacity() < writeLength){
+                readBuffer = ByteBuffer.allocate(Math.max(writeLength, 64));
+            }
+
+            //the source buffer is reused for the next packet, so the data must be copied out of it
+            int limit = buffer.limit();
+            buffer.limit(buffer.position() + writeLength);
+            readBuffer.clear();
+            readBuffer.put(buffer);
+            readBuffer.flip();
+            buffer.limit(limit);
+
+            writeBuffer = readBuffer;
         }
 
         @Override
@@ -86,15 +100,18 @@ public class Packets{
             buffer.put(priority);
             buffer.putShort((short)writeLength);
 
+            //the write buffer is usually shared between calls; only its limit is changed here, and restored afterwards
+            int limit = writeBuffer.limit();
             writeBuffer.position(0);
-            for(int i = 0; i < writeLength; i++){
-                buffer.put(writeBuffer.get());
-            }
+            writeBuffer.limit(writeLength);
+            buffer.put(writeBuffer);
+            writeBuffer.limit(limit);
         }
 
         @Override
         public void reset(){
             priority = 0;
+            writeBuffer = null;
         }
 
         @Override
@@ -0,0 +1,230 @@
+package mindustry.net;
+
+import arc.*;
+import arc.files.*;
+import arc.struct.*;
+import arc.util.*;
+import arc.util.io.*;
+import mindustry.net.Administration.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * Persists player info as an append-only log of binary records; the last record of each player wins.
+ * Modified records are serialized on the main thread and appended in batches by a background thread,
+ * so a single join or kick no longer rewrites the whole database.
+ */
+public class PlayerStore{
+    private static final int version = 1;
+    /** Delay between a record being modified and being written, in seconds. */
+    private static final float flushDelay = 5f;
+    /** Minimum amount of outdated records in the log before it gets compacted on load. */
+    private static final int compactThreshold = 1024;
+
+    private final Fi file;
+    private final ObjectSet<PlayerInfo> dirty = new ObjectSet<>();
+    private final ReusableByteOutStream byteOut = new ReusableByteOutStream();
+    private final DataOutputStream dataOut = new DataOutputStream(byteOut);
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Player Store Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean flushScheduled;
+    /** Amount of records in the log, including outdated ones. */
+    private int records;
+
+    public PlayerStore(Fi file){
+        this.file = file;
+    }
+
+    /** Reads every player in the log, compacting it if most of its records are outdated. */
+    public ObjectMap<String, PlayerInfo> load(){
+        ObjectMap<String, PlayerInfo> result = new ObjectMap<>();
+        records = 0;
+
+        if(file.exists()){
+            try(DataInputStream stream = new DataInputStream(new BufferedInputStream(file.read(), 8192))){
+                int fileVersion = stream.readInt();
+                if(fileVersion != version){
+                    throw new IOException("Unknown player store version: " + fileVersion);
+                }
+
+                while(true){
+                    int length;
+                    try{
+                        length = stream.readInt();
+                    }catch(EOFException e){
+                        break;
+                    }
+
+                    byte[] bytes = new byte[length];
+                    try{
+                        stream.readFully(bytes);
+                    }catch(EOFException e){
+                        //the last record was only partially written, most likely due to a crash; drop it
+                        Log.warn("Player store ends with a truncated record; ignoring it.");
+                        break;
+                    }
+
+                    PlayerInfo info = readInfo(new DataInputStream(new ByteArrayInputStream(bytes)));
+                    result.put(info.id, info);
+                    records++;
+                }
+            }catch(IOException e){
+                //keep the unreadable log around instead of overwriting it below
+                Log.err("Failed to read player store.", e);
+                file.moveTo(file.sibling(file.name() + ".corrupt"));
+            }
+        }
+
+        if(!file.exists() || records - result.size > Math.max(result.size, compactThreshold)){
+            compact(result);
+        }
+
+        return result;
+    }
+
+    /** Marks a player as modified; its record will be appended on the next flush. */
+    public void modified(PlayerInfo info){
+        dirty.add(info);
+
+        if(!flushScheduled){
+            flushScheduled = true;
+            Timer.schedule(() -> Core.app.post(this::flush), flushDelay);
+        }
+    }
+
+    /** Serializes all modified players and appends them to the log in the background. */
+    public void flush(){
+        flushScheduled = false;
+        if(dirty.isEmpty()) return;
+
+        byteOut.reset();
+        try{
+            for(PlayerInfo info : dirty){
+                writeRecord(info);
+            }
+        }catch(IOException e){
+            //writing into memory should never fail
+            throw new RuntimeException(e);
+        }
+
+        records += dirty.size;
+        dirty.clear();
+
+        byte[] bytes = new byte[byteOut.size()];
+        System.arraycopy(byteOut.getBytes(), 0, bytes, 0, bytes.length);
+
+        writer.submit(() -> {
+            try(OutputStream out = file.write(true)){
+                out.write(bytes);
+            }catch(IOException e){
+                Log.err("Failed to write player store.", e);
+            }
+        });
+    }
+
+    /** Flushes all modified players and blocks until they, and everything queued before them, are written. */
+    public void flushNow(){
+        flush();
+        try{
+            writer.submit(() -> {}).get();
+        }catch(InterruptedException | ExecutionException e){
+            Log.err(e);
+        }
+    }
+
+    /** Flushes all modified players and blocks until they are written. No more writes are possible afterwards. */
+    public void dispose(){
+        flush();
+        writer.shutdown();
+        try{
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        }catch(InterruptedException ignored){
+        }
+    }
+
+    /** Replaces the log with one that only contains the latest record of each player. */
+    private void compact(ObjectMap<String, PlayerInfo> infos){
+        byteOut.reset();
+        try{
+            dataOut.writeInt(version);
+            for(PlayerInfo info : infos.values()){
+                writeRecord(info);
+            }
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+
+        byte[] bytes = new byte[byteOut.size()];
+        System.arraycopy(byteOut.getBytes(), 0, bytes, 0, bytes.length);
+        records = infos.size;
+
+        writer.submit(() -> {
+            Fi temp = file.sibling(file.name() + ".tmp");
+            temp.writeBytes(bytes, false);
+            temp.moveTo(file);
+        });
+    }
+
+    private void writeRecord(PlayerInfo info) throws IOException{
+        int start = byteOut.size();
+        //placeholder for the length, filled in below
+        dataOut.writeInt(0);
+        writeInfo(dataOut, info);
+        dataOut.flush();
+
+        int length = byteOut.size() - start - 4;
+        byte[] bytes = byteOut.getBytes();
+        bytes[start] = (byte)(length >>> 24);
+        bytes[start + 1] = (byte)(length >>> 16);
+        bytes[start + 2] = (byte)(length >>> 8);
+        bytes[start + 3] = (byte)length;
+    }
+
+    private static void writeInfo(DataOutput stream, PlayerInfo info) throws IOException{
+        stream.writeUTF(info.id);
+        stream.writeUTF(info.lastName);
+        stream.writeUTF(info.lastIP);
+        writeStrings(stream, info.ips);
+        writeStrings(stream, info.names);
+        stream.writeBoolean(info.adminUsid != null);
+        if(info.adminUsid != null) stream.writeUTF(info.adminUsid);
+        stream.writeInt(info.timesKicked);
+        stream.writeInt(info.timesJoined);
+        stream.writeBoolean(info.banned);
+        stream.writeBoolean(info.admin);
+        stream.writeLong(info.lastKicked);
+    }
+
+    private static PlayerInfo readInfo(DataInput stream) throws IOException{
+        PlayerInfo info = new PlayerInfo(stream.readUTF());
+        info.lastName = stream.readUTF();
+        info.lastIP = stream.readUTF();
+        readStrings(stream, info.ips);
+        readStrings(stream, info.names);
+        info.adminUsid = stream.readBoolean() ? stream.readUTF() : null;
+        info.timesKicked = stream.readInt();
+        info.timesJoined = stream.readInt();
+        info.banned = stream.readBoolean();
+        info.admin = stream.readBoolean();
+        info.lastKicked = stream.readLong();
+        return info;
+    }
+
+    private static void writeStrings(DataOutput stream, Array<String> strings) throws IOException{
+        stream.writeInt(strings.size);
+        for(String string : strings){
+            stream.writeUTF(string);
+        }
+    }
+
+    private static void readStrings(DataInput stream, Array<String> out) throws IOException{
+        int amount = stream.readInt();
+        for(int i = 0; i < amount; i++){
+            out.add(stream.readUTF());
+        }
+    }
+}
@@ -1,11 +1,12 @@
 package mindustry.net;
 
+import arc.struct.*;
 import mindustry.net.Packets.StreamBegin;
 
 import java.io.*;
 
 public class Streamable implements Packet{
-    public transient ByteArrayInputStream stream;
+    public transient InputStream stream;
 
     @Override
     public boolean isImportant(){
@@ -16,7 +17,8 @@ public class Streamable implements Packet{
         public final int id;
         public final byte type;
         public final int total;
-        public final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        /** Received chunks. These are read directly when the stream is built, instead of being copied into one array. */
+        public final SegmentInputStream stream = new SegmentInputStream();
 
         public StreamBuilder(StreamBegin begin){
             id = begin.id;
@@ -29,16 +31,12 @@ public class Streamable implements Packet{
         }
 
         public void add(byte[] bytes){
-            try{
-                stream.write(bytes);
-            }catch(IOException e){
-                throw new RuntimeException(e);
-            }
+            stream.add(bytes, 0, bytes.length);
         }
 
         public Streamable build(){
             Streamable s = (Streamable)Registrator.getByID(type).constructor.get();
-            s.stream = new ByteArrayInputStream(stream.toByteArray());
+            s.stream = stream;
             return s;
         }
 
@@ -46,4 +44,66 @@ public class Streamable implements Packet{
             return stream.size() >= total;
         }
     }
+
+    /** Reads a sequence of byte array segments as one stream, without copying them. Segments must not be modified after being added. */
+    public static class SegmentInputStream extends InputStream{
+        private final Array<byte[]> arrays = new Array<>();
+        private final IntArray offsets = new IntArray(), lengths = new IntArray();
+        private int size, read, segment, position;
+
+        public void add(byte[] bytes, int offset, int length){
+            arrays.add(bytes);
+            offsets.add(offset);
+            lengths.add(length);
+            size += length;
+        }
+
+        /** @return the total amount of bytes added, including ones that were already read. */
+        public int size(){
+            return size;
+        }
+
+        @Override
+        public int read(){
+            while(segment < arrays.size && position >= lengths.get(segment)){
+                segment++;
+                position = 0;
+            }
+
+            if(segment >= arrays.size) return -1;
+
+            read++;
+            return arrays.get(segment)[offsets.get(segment) + position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length){
+            if(length == 0) return 0;
+
+            int total = 0;
+            while(length > 0 && segment < arrays.size){
+                int remaining = lengths.get(segment) - position;
+                if(remaining <= 0){
+                    segment++;
+                    position = 0;
+                    continue;
+                }
+
+                int amount = Math.min(length, remaining);
+                System.arraycopy(arrays.get(segment), offsets.get(segment) + position, bytes, offset, amount);
+                position += amount;
+                offset += amount;
+                length -= amount;
+                total += amount;
+            }
+
+            read += total;
+            return total == 0 ? -1 : total;
+        }
+
+        @Override
+        public int available(){
+            return size - read;
+        }
+    }
 }
@@ -43,6 +43,11 @@ public class Block extends BlockStorage{
 
     /** whether this block has a tile entity that updates */
     public boolean update;
+    /**
+     * whether this block splits its update into {@link #updateCompute(Tile)} and {@link #updateCommit(Tile)}, allowing the compute phase to run in parallel.
+     * disabled automatically for subclasses that override {@link #update(Tile)} without overriding the phases
+     */
+    public boolean parallelUpdate;
     /** whether this block has health and can be destroyed */
     public boolean destructible;
     /** whether unloaders work on this block*/
@@ -423,6 +428,15 @@ public class Block extends BlockStorage{
         }
         buildCost *= buildCostMultiplier;
 
+        //a subclass that overrides update() expects it to be called, which the phases would skip
+        if(parallelUpdate){
+            try{
+                parallelUpdate = getClass().getMethod("update", Tile.class).getDeclaringClass() == getClass().getMethod("updateCommit", Tile.class).getDeclaringClass();
+            }catch(NoSuchMethodException e){
+                parallelUpdate = false;
+            }
+        }
+
         if(consumes.has(ConsumeType.power)) hasPower = true;
         if(consumes.has(ConsumeType.item)) hasItems = true;
         if(consumes.has(ConsumeType.liquid)) hasLiquids = true;
@@ -596,6 +610,19 @@ public class Block extends BlockStorage{
     public void update(Tile tile){
     }
 
+    /**
+     * First phase of a parallel update. Runs on a worker thread, concurrently with the compute phase of other tiles.
+     * May only modify this tile's entity, and may not read other tile entities, use randomness or create effects.
+     * Runs before power graphs are updated, so power satisfaction lags behind by one frame compared to {@link #update(Tile)}.
+     * Only called if {@link #parallelUpdate} is true; otherwise, or if parallel updates are disabled, {@link #update(Tile)} is called instead.
+     */
+    public void updateCompute(Tile tile){
+    }
+
+    /** Second phase of a parallel update. Runs on the main thread in the regular update order, after all compute phases; item and liquid transfers happen here. */
+    public void updateCommit(Tile tile){
+    }
+
     public boolean isAccessible(){
         return (hasItems && itemCapacity > 0);
     }
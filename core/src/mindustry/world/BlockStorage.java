@@ -92,6 +92,7 @@ public abstract class BlockStorage extends UnlockableContent{
     }
 
     public void handleItem(Item item, Tile tile, Tile source){
+        tile.entity.noSleep();
         tile.entity.items.add(item, 1);
     }
 
@@ -104,6 +105,7 @@ public abstract class BlockStorage extends UnlockableContent{
     }
 
     public void handleLiquid(Tile tile, Tile source, Liquid liquid, float amount){
+        tile.entity.noSleep();
         tile.entity.liquids.add(liquid, amount);
     }
 
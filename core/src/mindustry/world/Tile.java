@@ -481,7 +481,10 @@ public class Tile implements Position, TargetTrait{
             }
         }
 
-        updateOcclusion();
+        //neighbors may not exist yet while generating; every tile is updated once loading ends
+        if(!world.isGenerating()){
+            updateOcclusion();
+        }
 
         world.notifyChanged(this);
     }
@@ -24,8 +24,8 @@ import java.io.*;
 import static mindustry.Vars.*;
 
 public class Conveyor extends Block implements Autotiler{
-    private static final float itemSpace = 0.4f;
-    private static final int capacity = 4;
+    static final float itemSpace = 0.4f;
+    static final int capacity = 4;
 
     private final Vec2 tr1 = new Vec2();
     private final Vec2 tr2 = new Vec2();
@@ -73,7 +73,7 @@ public class Conveyor extends Block implements Autotiler{
         ConveyorEntity entity = tile.ent();
         byte rotation = tile.rotation();
 
-        int frame = entity.clogHeat <= 0.5f ? (int)(((Time.time() * speed * 8f * entity.timeScale)) % 4) : 0;
+        int frame = entity.clogHeat() <= 0.5f ? (int)(((Time.time() * speed * 8f * entity.timeScale)) % 4) : 0;
         Draw.rect(regions[Mathf.clamp(entity.blendbits, 0, regions.length - 1)][Mathf.clamp(frame, 0, regions[0].length - 1)], tile.drawx(), tile.drawy(),
         tilesize * entity.blendsclx, tilesize * entity.blendscly, rotation * 90);
     }
@@ -81,7 +81,7 @@ public class Conveyor extends Block implements Autotiler{
     @Override
     public boolean shouldIdleSound(Tile tile){
         ConveyorEntity entity = tile.ent();
-        return entity.clogHeat <= 0.5f ;
+        return entity.clogHeat() <= 0.5f;
     }
 
     @Override
@@ -89,6 +89,12 @@ public class Conveyor extends Block implements Autotiler{
         super.onProximityUpdate(tile);
 
         ConveyorEntity entity = tile.ent();
+        //the chain this conveyor is part of may have changed
+        if(entity.line != null){
+            entity.line.dissolve();
+        }
+        entity.relink = true;
+
         int[] bits = buildBlending(tile, tile.rotation(), null, true);
         entity.blendbits = bits[0];
         entity.blendsclx = bits[1];
@@ -125,15 +131,18 @@ public class Conveyor extends Block implements Autotiler{
     public void drawLayer(Tile tile){
         ConveyorEntity e = tile.ent();
         byte rotation = tile.rotation();
+        Item[] ids = e.ids();
+        float[] xs = e.xs(), ys = e.ys();
+        int offset = e.offset();
 
-        for(int i = 0; i < e.len; i++){
-            Item item = e.ids[i];
+        for(int i = offset; i < offset + e.count(); i++){
+            Item item = ids[i];
             tr1.trns(rotation * 90, tilesize, 0);
-            tr2.trns(rotation * 90, -tilesize / 2f, e.xs[i] * tilesize / 2f);
+            tr2.trns(rotation * 90, -tilesize / 2f, xs[i] * tilesize / 2f);
 
             Draw.rect(item.icon(Cicon.medium),
-            (tile.x * tilesize + tr1.x * e.ys[i] + tr2.x),
-            (tile.y * tilesize + tr1.y * e.ys[i] + tr2.y), itemSize, itemSize);
+            (tile.x * tilesize + tr1.x * ys[i] + tr2.x),
+            (tile.y * tilesize + tr1.y * ys[i] + tr2.y), itemSize, itemSize);
         }
     }
 
@@ -141,11 +150,11 @@ public class Conveyor extends Block implements Autotiler{
     public void unitOn(Tile tile, Unit unit){
         ConveyorEntity entity = tile.ent();
 
-        if(entity.clogHeat > 0.5f){
+        if(entity.clogHeat() > 0.5f){
             return;
         }
 
-        entity.noSleep();
+        entity.wake();
 
         float speed = this.speed * tilesize / 2.4f;
         float centerSpeed = 0.1f;
@@ -162,7 +171,7 @@ public class Conveyor extends Block implements Autotiler{
             if(Math.abs(tile.worldx() - unit.x) < 1f) centerx = 0f;
         }
 
-        if(entity.len * itemSpace < 0.9f){
+        if(entity.count() * itemSpace < 0.9f){
             unit.applyImpulse((tx * speed + centerx) * entity.delta(), (ty * speed + centery) * entity.delta());
         }
     }
@@ -170,6 +179,21 @@ public class Conveyor extends Block implements Autotiler{
     @Override
     public void update(Tile tile){
         ConveyorEntity e = tile.ent();
+
+        if(e.relink){
+            ConveyorLine.form(e);
+        }
+
+        if(e.line != null){
+            //the front of a line moves all of its items; the other tiles sleep
+            if(e.line.head() == e){
+                e.line.update();
+            }else{
+                e.sleep();
+            }
+            return;
+        }
+
         e.minitem = 1f;
         e.mid = 0;
 
@@ -180,7 +204,7 @@ public class Conveyor extends Block implements Autotiler{
             return;
         }
 
-        float nextMax = e.aligned ? 1f - Math.max(itemSpace - e.nextc.minitem, 0) : 1f;
+        float nextMax = e.aligned ? 1f - Math.max(itemSpace - e.nextc.minitem(), 0) : 1f;
 
         for(int i = e.len - 1; i >= 0; i--){
             float nextpos = (i == e.len - 1 ? 100f : e.ys[i + 1]) - itemSpace;
@@ -195,7 +219,7 @@ public class Conveyor extends Block implements Autotiler{
             if(e.ys[i] >= 1f && offloadDir(tile, e.ids[i])){
                 //align X position if passing forwards
                 if(e.aligned){
-                    e.nextc.xs[e.nextc.lastInserted] = e.xs[i];
+                    e.nextc.alignInserted(e.xs[i]);
                 }
                 //remove last item
                 e.items.remove(e.ids[i], e.len - i);
@@ -232,10 +256,17 @@ public class Conveyor extends Block implements Autotiler{
     @Override
     public int removeStack(Tile tile, Item item, int amount){
         ConveyorEntity e = tile.ent();
-        e.noSleep();
+        e.wake();
         int removed = 0;
 
         for(int j = 0; j < amount; j++){
+            if(e.line != null){
+                if(e.line.remove(e.index, item)){
+                    removed ++;
+                }
+                continue;
+            }
+
             for(int i = 0; i < e.len; i++){
                 if(e.ids[i] == item){
                     e.remove(i);
@@ -258,46 +289,54 @@ public class Conveyor extends Block implements Autotiler{
     @Override
     public int acceptStack(Item item, int amount, Tile tile, Unit source){
         ConveyorEntity entity = tile.ent();
-        return Math.min((int)(entity.minitem / itemSpace), amount);
+        return Math.min((int)(entity.minitem() / itemSpace), amount);
     }
 
     @Override
     public void handleStack(Item item, int amount, Tile tile, Unit source){
         ConveyorEntity e = tile.ent();
-        amount = Math.min(amount, itemCapacity - e.len);
+        amount = Math.min(amount, itemCapacity - e.count());
 
         for(int i = amount - 1; i >= 0; i--){
+            e.items.add(item, 1);
+
+            if(e.line != null){
+                e.line.insert(e.index, item, 0, i * itemSpace);
+                continue;
+            }
+
             e.add(0);
             e.xs[0] = 0;
             e.ys[0] = i * itemSpace;
             e.ids[0] = item;
-            e.items.add(item, 1);
         }
 
-        e.noSleep();
+        e.wake();
     }
 
     @Override
     public boolean acceptItem(Item item, Tile tile, Tile source){
         ConveyorEntity e = tile.ent();
-        if(e.len >= capacity) return false;
+        if(e.count() >= capacity) return false;
         int direction = source == null ? 0 : Math.abs(source.relativeTo(tile.x, tile.y) - tile.rotation());
-        return (((direction == 0) && e.minitem >= itemSpace) || ((direction % 2 == 1) && e.minitem > 0.7f)) && (source == null || !(source.block().rotate && (source.rotation() + 2) % 4 == tile.rotation()));
+        return (((direction == 0) && e.minitem() >= itemSpace) || ((direction % 2 == 1) && e.minitem() > 0.7f)) && (source == null || !(source.block().rotate && (source.rotation() + 2) % 4 == tile.rotation()));
     }
 
     @Override
     public void handleItem(Item item, Tile tile, Tile source){
         ConveyorEntity e = tile.ent();
-        if(e.len >= capacity) return;
+        if(e.count() >= capacity) return;
 
         byte r = tile.rotation();
         int ang = ((source.relativeTo(tile.x, tile.y) - r));
         float x = (ang == -1 || ang == 3) ? 1 : (ang == 1 || ang == -3) ? -1 : 0;
 
-        e.noSleep();
+        e.wake();
         e.items.add(item, 1);
 
-        if(Math.abs(source.relativeTo(tile.x, tile.y) - r) == 0){ //idx = 0
+        if(e.line != null){
+            e.line.insert(e.index, item, x, Math.abs(source.relativeTo(tile.x, tile.y) - r) == 0 ? 0f : 0.5f);
+        }else if(Math.abs(source.relativeTo(tile.x, tile.y) - r) == 0){ //idx = 0
             e.add(0);
             e.xs[0] = x;
             e.ys[0] = 0;
@@ -323,7 +362,7 @@ public class Conveyor extends Block implements Autotiler{
         //whether the next conveyor's rotation == tile rotation
         boolean aligned;
 
-        int lastInserted, mid;
+        int mid;
         float minitem = 1;
 
         int blendbits;
@@ -331,6 +370,75 @@ public class Conveyor extends Block implements Autotiler{
 
         float clogHeat = 0f;
 
+        /** Line that simulates this conveyor, or null if it is updated on its own. While set, the item arrays above are unused. */
+        @Nullable ConveyorLine line;
+        /** Index of this conveyor in its line. */
+        int index;
+        /** Whether this conveyor should try to form a line on its next update. */
+        boolean relink = true;
+
+        int count(){
+            return line == null ? len : line.counts[index];
+        }
+
+        float minitem(){
+            return line == null ? minitem : line.minitems[index];
+        }
+
+        float clogHeat(){
+            return line == null ? clogHeat : line.clogs[index];
+        }
+
+        //arrays holding the items of this conveyor, starting at offset()
+        Item[] ids(){
+            return line == null ? ids : line.ids;
+        }
+
+        float[] xs(){
+            return line == null ? xs : line.xs;
+        }
+
+        float[] ys(){
+            return line == null ? ys : line.ys;
+        }
+
+        int offset(){
+            return line == null ? 0 : line.first(index);
+        }
+
+        /** Wakes up whatever updates the items of this conveyor. */
+        void wake(){
+            if(line == null){
+                noSleep();
+            }else{
+                line.head().noSleep();
+            }
+        }
+
+        /** Sets the X position of the item that was just inserted from behind. */
+        void alignInserted(float x){
+            if(count() > 0){
+                xs()[offset()] = x;
+            }
+        }
+
+        /** Sorts items by position, as lines expect them. */
+        void sortItems(){
+            for(int i = 1; i < len; i++){
+                Item id = ids[i];
+                float x = xs[i], y = ys[i];
+                int j = i - 1;
+                for(; j >= 0 && ys[j] > y; j--){
+                    ids[j + 1] = ids[j];
+                    xs[j + 1] = xs[j];
+                    ys[j + 1] = ys[j];
+                }
+                ids[j + 1] = id;
+                xs[j + 1] = x;
+                ys[j + 1] = y;
+            }
+        }
+
         final void add(int o){
             for(int i = Math.max(o + 1, len); i > o; i--){
                 ids[i] = ids[i - 1];
@@ -354,9 +462,12 @@ public class Conveyor extends Block implements Autotiler{
         @Override
         public void write(DataOutput stream) throws IOException{
             super.write(stream);
+            Item[] ids = ids();
+            float[] xs = xs(), ys = ys();
+            int offset = offset(), len = count();
             stream.writeInt(len);
 
-            for(int i = 0; i < len; i++){
+            for(int i = offset; i < offset + len; i++){
                 stream.writeInt(Pack.intBytes((byte)ids[i].id, (byte)(xs[i] * 127), (byte)(ys[i] * 255 - 128), (byte)0));
             }
         }
@@ -364,6 +475,10 @@ public class Conveyor extends Block implements Autotiler{
         @Override
         public void read(DataInput stream, byte revision) throws IOException{
             super.read(stream, revision);
+            if(line != null){
+                line.dissolve();
+            }
+
             int amount = stream.readInt();
             len = Math.min(amount, capacity);
 
@@ -0,0 +1,289 @@
+package mindustry.world.blocks.distribution;
+
+import arc.math.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.type.*;
+import mindustry.world.*;
+import mindustry.world.blocks.distribution.Conveyor.*;
+
+import static mindustry.world.blocks.distribution.Conveyor.*;
+
+/**
+ * A straight chain of conveyors with the same block, rotation and team, simulated as a single unit.
+ * The items of every tile are stored in one set of parallel arrays, sorted by tile and then by position,
+ * so moving them is a single pass over primitive arrays instead of one update and handoff per tile.
+ * Only the front tile of a line is updated; the others sleep.
+ * The tile entities stay visible to the rest of the game and forward insertions, removals, drawing and IO to their line.
+ * Lines are dissolved back into their tiles whenever the proximity of one of them changes, and formed again on the next update.
+ */
+public class ConveyorLine{
+    /** Maximum amount of tiles in a line. Longer chains are split into several lines that hand items to each other. */
+    private static final int maxLength = 256;
+    private static final Array<ConveyorEntity> chain = new Array<>();
+
+    /** Tiles of this line, from back to front. */
+    final ConveyorEntity[] tiles;
+    final Conveyor block;
+
+    //item data, sorted by owner and then by position
+    final Item[] ids;
+    final float[] xs, ys;
+    /** Index of the tile that each item is on. */
+    final int[] owners;
+    int len;
+
+    //tile data, indexed like tiles
+    final int[] counts, blends;
+    final float[] minitems, clogs;
+
+    private ConveyorLine(Array<ConveyorEntity> members, int from, int to){
+        int size = to - from;
+        tiles = new ConveyorEntity[size];
+        block = (Conveyor)members.get(from).block;
+
+        ids = new Item[size * capacity];
+        xs = new float[size * capacity];
+        ys = new float[size * capacity];
+        owners = new int[size * capacity];
+
+        counts = new int[size];
+        blends = new int[size];
+        minitems = new float[size];
+        clogs = new float[size];
+
+        for(int k = 0; k < size; k++){
+            ConveyorEntity e = members.get(from + k);
+            tiles[k] = e;
+            e.line = this;
+            e.index = k;
+
+            e.sortItems();
+            for(int j = 0; j < e.len; j++){
+                ids[len] = e.ids[j];
+                xs[len] = e.xs[j];
+                ys[len] = e.ys[j];
+                owners[len] = k;
+                len++;
+            }
+
+            counts[k] = e.len;
+            blends[k] = e.blendbits;
+            minitems[k] = e.minitem;
+            clogs[k] = e.clogHeat;
+            e.len = 0;
+        }
+
+        head().noSleep();
+    }
+
+    /** Forms lines out of the chain of conveyors that this entity is part of. */
+    static void form(ConveyorEntity start){
+        Tile tail = start.tile;
+        for(Tile back = tail.back(); linked(back, tail); back = tail.back()){
+            tail = back;
+        }
+
+        chain.clear();
+        for(Tile current = tail; ; current = current.front()){
+            chain.add(current.ent());
+            if(!linked(current, current.front())) break;
+        }
+
+        for(ConveyorEntity e : chain){
+            if(e.line != null){
+                e.line.dissolve();
+            }
+        }
+
+        for(ConveyorEntity e : chain){
+            e.relink = false;
+        }
+
+        //split from the back, so the same chain is always split the same way
+        for(int from = 0; chain.size - from >= 2; from += maxLength){
+            new ConveyorLine(chain, from, Math.min(from + maxLength, chain.size));
+        }
+
+        chain.clear();
+    }
+
+    /** @return whether the back tile passes items straight to the front tile, and both can be part of the same line. */
+    private static boolean linked(Tile back, Tile front){
+        return back != null && front != null && back.entity instanceof ConveyorEntity && front.entity instanceof ConveyorEntity
+            && back.block() == front.block() && back.rotation() == front.rotation() && back.getTeam() == front.getTeam() && back.front() == front;
+    }
+
+    /** @return the front tile, which updates this line. */
+    ConveyorEntity head(){
+        return tiles[tiles.length - 1];
+    }
+
+    /** Moves all items back into their tiles and detaches them. They form a new line on their next update. */
+    void dissolve(){
+        for(int k = 0; k < tiles.length; k++){
+            ConveyorEntity e = tiles[k];
+            e.len = 0;
+            e.mid = 0;
+            e.minitem = minitems[k];
+            e.clogHeat = clogs[k];
+            e.line = null;
+            e.relink = true;
+        }
+
+        for(int i = 0; i < len; i++){
+            ConveyorEntity e = tiles[owners[i]];
+            if(e.len < capacity){
+                e.ids[e.len] = ids[i];
+                e.xs[e.len] = xs[i];
+                e.ys[e.len] = ys[i];
+                e.len++;
+            }
+        }
+
+        len = 0;
+
+        for(ConveyorEntity e : tiles){
+            //removed tiles dissolve the lines they were part of, but must not be added back
+            if(!e.isDead()){
+                e.noSleep();
+            }
+        }
+    }
+
+    /** Moves every item of this line, passing items between its tiles directly and offloading them at the front. */
+    void update(){
+        float speed = block.speed;
+        int size = tiles.length;
+
+        for(int k = 0; k < size; k++){
+            ConveyorEntity e = tiles[k];
+            //sleeping tiles do not update, so their overdrive has to run out here
+            if(e.timeScale != 1f && e.isSleeping()){
+                e.timeScaleDuration -= Time.delta();
+                if(e.timeScaleDuration <= 0f || !block.canOverdrive){
+                    e.timeScale = 1f;
+                }
+            }
+            minitems[k] = 1f;
+        }
+
+        ConveyorEntity head = head();
+
+        if(len == 0){
+            for(int k = 0; k < size; k++){
+                clogs[k] = 0f;
+            }
+            head.sleep();
+            return;
+        }
+
+        float headMax = head.aligned ? 1f - Math.max(itemSpace - head.nextc.minitem(), 0) : 1f;
+
+        for(int i = len - 1; i >= 0; i--){
+            int k = owners[i];
+            boolean last = i == len - 1 || owners[i + 1] != k;
+            float nextpos = (last ? 100f : ys[i + 1]) - itemSpace;
+            float maxmove = Mathf.clamp(nextpos - ys[i], 0, speed * tiles[k].delta());
+            float nextMax = k == size - 1 ? headMax : 1f - Math.max(itemSpace - minitems[k + 1], 0);
+
+            ys[i] += maxmove;
+
+            if(ys[i] > nextMax) ys[i] = nextMax;
+            xs[i] = Mathf.approachDelta(xs[i], 0, speed * 2);
+
+            if(ys[i] >= 1f && last){
+                if(k == size - 1){
+                    if(block.offloadDir(head.tile, ids[i])){
+                        //align X position if passing forwards
+                        if(head.aligned){
+                            head.nextc.alignInserted(xs[i]);
+                        }
+                        head.items.remove(ids[i], 1);
+                        remove(i);
+                        continue;
+                    }
+                }else if(counts[k + 1] < capacity && minitems[k + 1] >= itemSpace){
+                    //pass the item to the next tile of this line, keeping its X position
+                    tiles[k].items.remove(ids[i], 1);
+                    tiles[k + 1].items.add(ids[i], 1);
+                    counts[k]--;
+                    counts[k + 1]++;
+                    owners[i] = k + 1;
+                    ys[i] = 0f;
+                    minitems[k + 1] = 0f;
+                    continue;
+                }
+            }
+
+            if(ys[i] < minitems[k]){
+                minitems[k] = ys[i];
+            }
+        }
+
+        for(int k = 0; k < size; k++){
+            if(minitems[k] < itemSpace + (blends[k] == 1 ? 0.3f : 0f)){
+                clogs[k] = Mathf.lerpDelta(clogs[k], 1f, 0.02f);
+            }else{
+                clogs[k] = 0f;
+            }
+        }
+
+        head.noSleep();
+    }
+
+    /** @return the index of the first item on this tile, or where it would be inserted if there is none. */
+    int first(int tile){
+        int lo = 0, hi = len;
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(owners[mid] < tile){
+                lo = mid + 1;
+            }else{
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Inserts an item on a tile, before any items at the same or a higher position. The tile must have space for it. */
+    void insert(int tile, Item item, float x, float y){
+        int i = first(tile);
+        while(i < len && owners[i] == tile && ys[i] < y) i++;
+
+        System.arraycopy(ids, i, ids, i + 1, len - i);
+        System.arraycopy(xs, i, xs, i + 1, len - i);
+        System.arraycopy(ys, i, ys, i + 1, len - i);
+        System.arraycopy(owners, i, owners, i + 1, len - i);
+
+        ids[i] = item;
+        xs[i] = x;
+        ys[i] = y;
+        owners[i] = tile;
+        len++;
+        counts[tile]++;
+    }
+
+    /** Removes the first item of this type on a tile. Does not modify its item module. */
+    boolean remove(int tile, Item item){
+        for(int i = first(tile); i < len && owners[i] == tile; i++){
+            if(ids[i] == item){
+                remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void remove(int i){
+        counts[owners[i]]--;
+
+        System.arraycopy(ids, i + 1, ids, i, len - i - 1);
+        System.arraycopy(xs, i + 1, xs, i, len - i - 1);
+        System.arraycopy(ys, i + 1, ys, i, len - i - 1);
+        System.arraycopy(owners, i + 1, owners, i, len - i - 1);
+
+        len--;
+        ids[len] = null;
+    }
+}
@@ -3,23 +3,54 @@ package mindustry.world.blocks.power;
 import arc.*;
 import arc.math.*;
 import arc.struct.*;
+import arc.struct.Queue;
 import arc.util.*;
 import mindustry.world.*;
 import mindustry.world.consumers.*;
 
+import java.util.*;
+
 public class PowerGraph{
     private final static Queue<Tile> queue = new Queue<>();
     private final static Array<Tile> outArray1 = new Array<>();
     private final static Array<Tile> outArray2 = new Array<>();
     private final static IntSet closedSet = new IntSet();
-
-    public final ObjectSet<Tile> producers = new ObjectSet<>();
-    public final ObjectSet<Tile> consumers = new ObjectSet<>();
-    public final ObjectSet<Tile> batteries = new ObjectSet<>();
+    private final static Array<Search> searches = new Array<>();
+    /** Maps tile positions to the search that found them while removing a tile. */
+    private final static IntIntMap searchLabels = new IntIntMap();
+    /** Amount of updates after which running totals are summed from scratch, so rounding errors do not add up. */
+    private final static int recomputeInterval = 60 * 5;
+
+    /**
+     * Whether graphs keep running totals of the power produced, requested and stored, which members update through {@link #refresh(Tile)}
+     * as they change, instead of summing all members on every update. Set from the server config every frame.
+     * A change made to a member by another block, such as items handed to a consumer, reaches the totals when that member next updates.
+     */
+    public static boolean incremental;
+
+    public final Members producers = new Members();
+    public final Members consumers = new Members();
+    public final Members batteries = new Members();
     public final ObjectSet<Tile> all = new ObjectSet<>();
 
     private final WindowedMean powerBalance = new WindowedMean(60);
     private float lastPowerProduced, lastPowerNeeded, lastUsageFraction;
+    /** Sum of the capacity of all batteries, kept up to date as batteries are added and removed. */
+    private float totalBatteryCapacity;
+
+    /** Whether the running totals and the values cached in each member are up to date. Cleared when members are added or removed. */
+    private boolean totalsValid;
+    /** Running totals of the power produced and requested by valid consumers, per unit of {@link Time#delta()}. */
+    private float productionTotal, requestTotal;
+    /** Running total of the power stored in batteries. */
+    private float storedTotal;
+    /** Amount of consumers with buffered power, which need power distributed on every update. */
+    private int bufferedConsumers;
+    private int updatesSinceRecompute;
+    /** Whether a consumer changed since power was last distributed. */
+    private boolean distributionDirty = true;
+    /** Running totals at the time power was last distributed. */
+    private float distributedProduction, distributedRequest;
 
     private long lastFrameUpdated = -1;
     private final int graphID;
@@ -61,109 +92,141 @@ public class PowerGraph{
     }
 
     public float getPowerProduced(){
+        if(totalsValid){
+            return Math.max(productionTotal, 0f) * Time.delta();
+        }
+
         float powerProduced = 0f;
-        for(Tile producer : producers){
+        Tile[] tiles = producers.tiles;
+        for(int i = 0; i < producers.size; i++){
+            Tile producer = tiles[i];
             if(producer.entity == null) continue;
             powerProduced += producer.block().getPowerProduction(producer) * producer.entity.delta();
         }
         return powerProduced;
     }
 
+    /** Calculates the power needed by all consumers. Also records which of them are valid, for {@link #distributePower(float, float)}. */
     public float getPowerNeeded(){
+        if(totalsValid){
+            return Math.max(requestTotal, 0f) * Time.delta();
+        }
+
         float powerNeeded = 0f;
-        for(Tile consumer : consumers){
-            Consumers consumes = consumer.block().consumes;
-            if(consumes.hasPower()){
-                ConsumePower consumePower = consumes.getPower();
-                if(otherConsumersAreValid(consumer, consumePower)){
-                    powerNeeded += consumePower.requestedPower(consumer.entity) * consumer.entity.delta();
-                }
+        Tile[] tiles = consumers.tiles;
+        ConsumePower[] powers = consumers.powers;
+        boolean[] valid = consumers.valid;
+        for(int i = 0; i < consumers.size; i++){
+            Tile consumer = tiles[i];
+            ConsumePower consumePower = powers[i];
+            valid[i] = consumePower != null && otherConsumersAreValid(consumer, consumePower);
+            if(valid[i]){
+                powerNeeded += consumePower.requestedPower(consumer.entity) * consumer.entity.delta();
             }
         }
         return powerNeeded;
     }
 
     public float getBatteryStored(){
+        if(totalsValid){
+            return storedTotal;
+        }
+
         float totalAccumulator = 0f;
-        for(Tile battery : batteries){
-            Consumers consumes = battery.block().consumes;
-            if(consumes.hasPower()){
-                totalAccumulator += battery.entity.power.status * consumes.getPower().capacity;
+        Tile[] tiles = batteries.tiles;
+        ConsumePower[] powers = batteries.powers;
+        for(int i = 0; i < batteries.size; i++){
+            if(powers[i] != null){
+                totalAccumulator += tiles[i].entity.power.status * powers[i].capacity;
             }
         }
         return totalAccumulator;
     }
 
+    /**
+     * @return how much power the batteries can still take. Unless running totals are kept, the stored amount is summed
+     * over all batteries on every call, since blocks set the power status of their entities directly.
+     */
     public float getBatteryCapacity(){
-        float totalCapacity = 0f;
-        for(Tile battery : batteries){
-            if(battery.block().consumes.hasPower()){
-                ConsumePower power = battery.block().consumes.getPower();
-                totalCapacity += (1f - battery.entity.power.status) * power.capacity;
-            }
-        }
-        return totalCapacity;
+        return Math.max(totalBatteryCapacity - getBatteryStored(), 0f);
     }
 
     public float getTotalBatteryCapacity(){
-        float totalCapacity = 0f;
-        for(Tile battery : batteries){
-            if(battery.block().consumes.hasPower()){
-                totalCapacity += battery.block().consumes.getPower().capacity;
-            }
-        }
-        return totalCapacity;
+        return totalBatteryCapacity;
     }
 
     public float useBatteries(float needed){
-        float stored = getBatteryStored();
+        return useBatteries(needed, getBatteryStored());
+    }
+
+    private float useBatteries(float needed, float stored){
         if(Mathf.equal(stored, 0f)) return 0f;
 
         float used = Math.min(stored, needed);
         float consumedPowerPercentage = Math.min(1.0f, needed / stored);
-        for(Tile battery : batteries){
-            Consumers consumes = battery.block().consumes;
-            if(consumes.hasPower()){
-                battery.entity.power.status *= (1f-consumedPowerPercentage);
+        Tile[] tiles = batteries.tiles;
+        ConsumePower[] powers = batteries.powers;
+        float total = 0f;
+        for(int i = 0; i < batteries.size; i++){
+            if(powers[i] != null){
+                tiles[i].entity.power.status *= (1f-consumedPowerPercentage);
+                batteries.values[i] = tiles[i].entity.power.status * powers[i].capacity;
+                total += batteries.values[i];
             }
         }
+        storedTotal = total;
         return used;
     }
 
     public float chargeBatteries(float excess){
-        float capacity = getBatteryCapacity();
+        return chargeBatteries(excess, getBatteryStored());
+    }
+
+    private float chargeBatteries(float excess, float stored){
+        float capacity = Math.max(totalBatteryCapacity - stored, 0f);
         //how much of the missing in each battery % is charged
         float chargedPercent = Math.min(excess/capacity, 1f);
         if(Mathf.equal(capacity, 0f)) return 0f;
 
-        for(Tile battery : batteries){
-            Consumers consumes = battery.block().consumes;
-            if(consumes.hasPower()){
-                ConsumePower consumePower = consumes.getPower();
-                if(consumePower.capacity > 0f){
-                    battery.entity.power.status += (1f-battery.entity.power.status) * chargedPercent;
+        Tile[] tiles = batteries.tiles;
+        ConsumePower[] powers = batteries.powers;
+        float total = 0f;
+        for(int i = 0; i < batteries.size; i++){
+            if(powers[i] != null){
+                if(powers[i].capacity > 0f){
+                    tiles[i].entity.power.status += (1f-tiles[i].entity.power.status) * chargedPercent;
                 }
+                batteries.values[i] = tiles[i].entity.power.status * powers[i].capacity;
+                total += batteries.values[i];
             }
         }
+        storedTotal = total;
         return Math.min(excess, capacity);
     }
 
+    /** Sets the power status of all consumers. Expects {@link #getPowerNeeded()} to have been called since the last change to this graph. */
     public void distributePower(float needed, float produced){
         //distribute even if not needed. this is because some might be requiring power but not using it; it updates consumers
         float coverage = Mathf.zero(needed) && Mathf.zero(produced) ? 0f : Mathf.zero(needed) ? 1f : Math.min(1, produced / needed);
-        for(Tile consumer : consumers){
-            Consumers consumes = consumer.block().consumes;
-            if(consumes.hasPower()){
-                ConsumePower consumePower = consumes.getPower();
+        Tile[] tiles = consumers.tiles;
+        ConsumePower[] powers = consumers.powers;
+        for(int i = 0; i < consumers.size; i++){
+            Tile consumer = tiles[i];
+            ConsumePower consumePower = powers[i];
+            if(consumePower != null){
                 if(consumePower.buffered){
                     if(!Mathf.zero(consumePower.capacity)){
                         // Add an equal percentage of power to all buffers, based on the global power coverage in this graph
                         float maximumRate = consumePower.requestedPower(consumer.entity) * coverage * consumer.entity.delta();
                         consumer.entity.power.status = Mathf.clamp(consumer.entity.power.status + maximumRate / consumePower.capacity);
+                        //the request of a buffer depends on how full it is
+                        if(totalsValid){
+                            refreshConsumer(i);
+                        }
                     }
                 }else{
                     //valid consumers get power as usual
-                    if(otherConsumersAreValid(consumer, consumePower)){
+                    if(consumers.valid[i]){
                         consumer.entity.power.status = coverage;
                     }else{ //invalid consumers get an estimate, if they were to activate
                         consumer.entity.power.status = Math.min(1, produced / (needed + consumePower.usage * consumer.entity.delta()));
@@ -177,21 +240,111 @@ public class PowerGraph{
         }
     }
 
+    /**
+     * Updates what a member contributes to the running totals. Called by each member when its entity updates,
+     * so an update of the graph only costs as much as the members that changed. Does nothing unless {@link #incremental} is set.
+     */
+    public void refresh(Tile tile){
+        if(!totalsValid) return;
+
+        int index = producers.indexOf(tile);
+        if(index != -1){
+            float value = production(tile);
+            productionTotal += value - producers.values[index];
+            producers.values[index] = value;
+        }
+
+        index = consumers.indexOf(tile);
+        if(index != -1 && refreshConsumer(index)){
+            distributionDirty = true;
+        }
+
+        index = batteries.indexOf(tile);
+        if(index != -1 && batteries.powers[index] != null){
+            float value = tile.entity.power.status * batteries.powers[index].capacity;
+            storedTotal += value - batteries.values[index];
+            batteries.values[index] = value;
+        }
+    }
+
+    /** Sums all running totals from scratch, caching the contribution of each member. */
+    private void recomputeTotals(){
+        productionTotal = requestTotal = storedTotal = 0f;
+        bufferedConsumers = 0;
+
+        for(int i = 0; i < producers.size; i++){
+            producers.values[i] = production(producers.tiles[i]);
+            productionTotal += producers.values[i];
+        }
+
+        for(int i = 0; i < consumers.size; i++){
+            consumers.valid[i] = false;
+            refreshConsumer(i);
+            if(consumers.powers[i] != null && consumers.powers[i].buffered){
+                bufferedConsumers++;
+            }
+        }
+
+        for(int i = 0; i < batteries.size; i++){
+            batteries.values[i] = batteries.powers[i] == null ? 0f : batteries.tiles[i].entity.power.status * batteries.powers[i].capacity;
+            storedTotal += batteries.values[i];
+        }
+
+        totalsValid = true;
+        updatesSinceRecompute = 0;
+        distributionDirty = true;
+    }
+
+    private static float production(Tile tile){
+        return tile.entity == null ? 0f : tile.block().getPowerProduction(tile) * tile.entity.timeScale;
+    }
+
+    /**
+     * Updates whether a consumer is valid and its cached request, which is only added to the total if it is valid.
+     * Invalid consumers cache their usage instead, which their estimated power status depends on.
+     * @return whether either of them changed.
+     */
+    private boolean refreshConsumer(int index){
+        Tile tile = consumers.tiles[index];
+        ConsumePower consumePower = consumers.powers[index];
+        boolean valid = consumePower != null && otherConsumersAreValid(tile, consumePower);
+        float value = consumePower == null ? 0f : (valid ? consumePower.requestedPower(tile.entity) : consumePower.usage) * tile.entity.timeScale;
+        boolean changed = valid != consumers.valid[index] || value != consumers.values[index];
+
+        if(consumers.valid[index]) requestTotal -= consumers.values[index];
+        if(valid) requestTotal += value;
+        consumers.valid[index] = valid;
+        consumers.values[index] = value;
+        return changed;
+    }
+
+    /** @return whether distributing power could change the power status of any consumer. */
+    private boolean needsDistribution(boolean batteriesUsed){
+        return !totalsValid || distributionDirty || batteriesUsed || bufferedConsumers > 0
+            || productionTotal != distributedProduction || requestTotal != distributedRequest;
+    }
+
     public void update(){
         if(Core.graphics.getFrameId() == lastFrameUpdated){
             return;
-        }else if(!consumers.isEmpty() && consumers.first().isEnemyCheat()){
+        }else if(consumers.size > 0 && consumers.tiles[0].isEnemyCheat()){
             //when cheating, just set status to 1
-            for(Tile tile : consumers){
-                tile.entity.power.status = 1f;
+            for(int i = 0; i < consumers.size; i++){
+                consumers.tiles[i].entity.power.status = 1f;
             }
-
+            distributionDirty = true;
             lastPowerNeeded = lastPowerProduced = lastUsageFraction = 1f;
             return;
         }
 
         lastFrameUpdated = Core.graphics.getFrameId();
 
+        if(!incremental){
+            totalsValid = false;
+        }else if(!totalsValid || ++updatesSinceRecompute >= recomputeInterval){
+            recomputeTotals();
+        }
+
         float powerNeeded = getPowerNeeded();
         float powerProduced = getPowerProduced();
         float rawProduced = powerProduced;
@@ -202,18 +355,29 @@ public class PowerGraph{
         powerBalance.addValue((lastPowerProduced - lastPowerNeeded) / Time.delta());
 
         if(!(consumers.size == 0 && producers.size == 0 && batteries.size == 0)){
+            boolean batteriesUsed = false;
 
             if(!Mathf.equal(powerNeeded, powerProduced)){
+                //only sum up the stored power once per update
+                float stored = getBatteryStored();
                 if(powerNeeded > powerProduced){
-                    float powerBatteryUsed = useBatteries(powerNeeded - powerProduced);
+                    float powerBatteryUsed = useBatteries(powerNeeded - powerProduced, stored);
                     powerProduced += powerBatteryUsed;
                     lastPowerProduced += powerBatteryUsed;
+                    batteriesUsed = powerBatteryUsed > 0f;
                 }else if(powerProduced > powerNeeded){
-                    powerProduced -= chargeBatteries(powerProduced - powerNeeded);
+                    float charged = chargeBatteries(powerProduced - powerNeeded, stored);
+                    powerProduced -= charged;
+                    batteriesUsed = charged > 0f;
                 }
             }
 
-            distributePower(powerNeeded, powerProduced);
+            if(needsDistribution(batteriesUsed)){
+                distributePower(powerNeeded, powerProduced);
+                distributionDirty = false;
+                distributedProduction = productionTotal;
+                distributedRequest = requestTotal;
+            }
         }
 
         //overproducing: 10 / 20 = 0.5
@@ -223,7 +387,18 @@ public class PowerGraph{
         lastUsageFraction = Mathf.zero(rawProduced) ? 1f : Mathf.clamp(powerNeeded / rawProduced);
     }
 
+    /**
+     * Merges two graphs. The tiles of the smaller graph are moved into the larger one, which may be either of them,
+     * so a tile is moved at most log2(n) times over any sequence of merges.
+     */
     public void add(PowerGraph graph){
+        if(graph == this) return;
+
+        if(graph.all.size > all.size){
+            graph.add(this);
+            return;
+        }
+
         for(Tile tile : graph.all){
             add(tile);
         }
@@ -231,6 +406,9 @@ public class PowerGraph{
 
     public void add(Tile tile){
         if(tile.entity == null || tile.entity.power == null) return;
+        totalsValid = false;
+        //the power available to this tile may have changed
+        tile.entity.noSleep();
         tile.entity.power.graph = this;
         all.add(tile);
 
@@ -238,7 +416,9 @@ public class PowerGraph{
             producers.add(tile);
             consumers.add(tile);
         }else if(tile.block().outputsPower && tile.block().consumesPower){
-            batteries.add(tile);
+            if(batteries.add(tile) && tile.block().consumes.hasPower()){
+                totalBatteryCapacity += tile.block().consumes.getPower().capacity;
+            }
         }else if(tile.block().outputsPower){
             producers.add(tile);
         }else if(tile.block().consumesPower){
@@ -263,47 +443,164 @@ public class PowerGraph{
     }
 
     private void removeSingle(Tile tile){
+        if(removeMember(tile)){
+            updateBatteryCapacity();
+        }
+    }
+
+    /** Removes a tile without updating the total battery capacity. @return whether the tile was a battery. */
+    private boolean removeMember(Tile tile){
+        totalsValid = false;
         all.remove(tile);
         producers.remove(tile);
         consumers.remove(tile);
-        batteries.remove(tile);
+        return batteries.remove(tile);
     }
 
+    private void updateBatteryCapacity(){
+        //recalculate instead of subtracting, so rounding errors do not add up
+        totalBatteryCapacity = 0f;
+        for(int i = 0; i < batteries.size; i++){
+            if(batteries.powers[i] != null){
+                totalBatteryCapacity += batteries.powers[i].capacity;
+            }
+        }
+    }
+
+    /**
+     * Removes a tile, splitting off any part of the graph that it was the only connection to.
+     * One search is started from each neighbor, and they take turns exploring one tile each. Searches that meet are joined,
+     * and a search that runs out of tiles has found a separate component, which is moved to a new graph.
+     * Once a single search is left, the rest of the graph is known to be connected and stays in this one,
+     * so only the smaller components are ever traversed.
+     */
     public void remove(Tile tile){
         removeSingle(tile);
-        //begin by clearing the closed set
-        closedSet.clear();
 
-        //go through all the connections of this tile
+        searches.clear();
+        searchLabels.clear();
+
+        //start a search from each neighbor that is still part of this graph
         for(Tile other : tile.block().getPowerConnections(tile, outArray1)){
-            //a graph has already been assigned to this tile from a previous call, skip it
-            if(other.entity.power.graph != this) continue;
+            if(other.entity.power.graph != this || searchLabels.containsKey(other.pos())) continue;
 
-            //create graph for this branch
-            PowerGraph graph = new PowerGraph();
-            graph.add(other);
-            //add to queue for BFS
-            queue.clear();
-            queue.addLast(other);
-            while(queue.size > 0){
-                //get child from queue
-                Tile child = queue.removeFirst();
-                //remove it from this graph
-                removeSingle(child);
-                //add it to the new branch graph
-                graph.add(child);
-                //go through connections
+            Search search = new Search(searches.size);
+            search.add(other);
+            searchLabels.put(other.pos(), search.id);
+            searches.add(search);
+        }
+
+        //removing a tile with a single neighbor never splits a graph
+        if(searches.size <= 1){
+            searches.clear();
+            searchLabels.clear();
+            return;
+        }
+
+        int active = searches.size;
+        while(active > 1){
+            for(int i = 0; i < searches.size && active > 1; i++){
+                Search search = searches.get(i);
+                //skip searches that were joined into another one, or are done
+                if(search.parent != i || search.done()) continue;
+
+                Tile child = search.next();
                 for(Tile next : child.block().getPowerConnections(child, outArray2)){
-                    //make sure it hasn't looped back, and that the new graph being assigned hasn't already been assigned
-                    //also skip closed tiles
-                    if(next != tile && next.entity.power.graph != graph && !closedSet.contains(next.pos())){
-                        queue.addLast(next);
-                        closedSet.add(next.pos());
+                    if(next == tile || next.entity == null || next.entity.power == null || next.entity.power.graph != this) continue;
+
+                    int label = searchLabels.get(next.pos(), -1);
+                    if(label == -1){
+                        search.add(next);
+                        searchLabels.put(next.pos(), search.id);
+                    }else{
+                        Search other = find(label);
+                        if(other != search){
+                            //both searches are in the same component; keep the larger one
+                            if(other.members.size > search.members.size){
+                                search.joinInto(other);
+                                search = other;
+                            }else{
+                                other.joinInto(search);
+                            }
+                            active--;
+                        }
                     }
                 }
+
+                if(search.done()){
+                    active--;
+
+                    //this search explored everything it can reach without meeting another one, so it is a separate component
+                    PowerGraph graph = new PowerGraph();
+                    boolean batteriesRemoved = false;
+                    for(Tile member : search.members){
+                        if(removeMember(member)){
+                            batteriesRemoved = true;
+                        }
+                        graph.add(member);
+                    }
+                    if(batteriesRemoved){
+                        updateBatteryCapacity();
+                    }
+                    //update the graph once so direct consumers without any connected producer lose their power
+                    graph.update();
+                }
             }
-            //update the graph once so direct consumers without any connected producer lose their power
-            graph.update();
+        }
+
+        searches.clear();
+        searchLabels.clear();
+    }
+
+    private static Search find(int id){
+        Search search = searches.get(id);
+        while(search.parent != search.id){
+            //path halving
+            search.parent = searches.get(search.parent).parent;
+            search = searches.get(search.parent);
+        }
+        return search;
+    }
+
+    /** A breadth-first search over part of a graph, used by {@link #remove(Tile)}. */
+    private static class Search{
+        final int id;
+        /** Index of the search this one was joined into, or its own index. */
+        int parent;
+        /** All tiles found by this search. */
+        final Array<Tile> members = new Array<>();
+        /** Tiles that have not been explored yet, starting at {@link #head}. */
+        final Array<Tile> queue = new Array<>();
+        int head;
+
+        Search(int id){
+            this.id = id;
+            this.parent = id;
+        }
+
+        void add(Tile tile){
+            members.add(tile);
+            queue.add(tile);
+        }
+
+        Tile next(){
+            return queue.get(head++);
+        }
+
+        boolean done(){
+            return head >= queue.size;
+        }
+
+        /** Moves all tiles of this search to another one, which continues exploring them. */
+        void joinInto(Search other){
+            other.members.addAll(members);
+            for(int i = head; i < queue.size; i++){
+                other.queue.add(queue.get(i));
+            }
+            members.clear();
+            queue.clear();
+            head = 0;
+            parent = other.id;
         }
     }
 
@@ -319,12 +616,84 @@ public class PowerGraph{
     @Override
     public String toString(){
         return "PowerGraph{" +
-        "producers=" + producers +
-        ", consumers=" + consumers +
-        ", batteries=" + batteries +
-        ", all=" + all +
+        "producers=" + producers.size +
+        ", consumers=" + consumers.size +
+        ", batteries=" + batteries.size +
+        ", all=" + all.size +
         ", lastFrameUpdated=" + lastFrameUpdated +
         ", graphID=" + graphID +
         '}';
     }
+
+    /**
+     * Tiles with one role in a graph, stored in dense arrays so that updates iterate them without hashing.
+     * Removal swaps the last tile into the removed slot, so the order is not stable.
+     */
+    public static class Members{
+        /** Maps tile positions to their index. */
+        private final IntIntMap indices = new IntIntMap();
+        Tile[] tiles = new Tile[16];
+        /** Power consumer of each tile's block, or null if it has none. */
+        ConsumePower[] powers = new ConsumePower[16];
+        /** What each tile contributes to the running totals of its graph. */
+        float[] values = new float[16];
+        /** Whether each consumer was valid when it was last checked. */
+        boolean[] valid = new boolean[16];
+        int size;
+
+        public int size(){
+            return size;
+        }
+
+        public Tile get(int index){
+            return tiles[index];
+        }
+
+        public boolean contains(Tile tile){
+            return indices.containsKey(tile.pos());
+        }
+
+        /** @return the index of the tile, or -1 if it is not a member. */
+        int indexOf(Tile tile){
+            return indices.get(tile.pos(), -1);
+        }
+
+        /** @return whether the tile was not a member before. */
+        boolean add(Tile tile){
+            if(indices.containsKey(tile.pos())) return false;
+
+            if(size == tiles.length){
+                tiles = Arrays.copyOf(tiles, size * 2);
+                powers = Arrays.copyOf(powers, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                valid = Arrays.copyOf(valid, size * 2);
+            }
+
+            Consumers consumes = tile.block().consumes;
+            tiles[size] = tile;
+            powers[size] = consumes.hasPower() ? consumes.getPower() : null;
+            values[size] = 0f;
+            valid[size] = false;
+            indices.put(tile.pos(), size++);
+            return true;
+        }
+
+        /** @return whether the tile was a member. */
+        boolean remove(Tile tile){
+            int index = indices.remove(tile.pos(), -1);
+            if(index == -1) return false;
+
+            size--;
+            if(index != size){
+                tiles[index] = tiles[size];
+                powers[index] = powers[size];
+                values[index] = values[size];
+                valid[index] = valid[size];
+                indices.put(tiles[index].pos(), index);
+            }
+            tiles[size] = null;
+            powers[size] = null;
+            return true;
+        }
+    }
 }
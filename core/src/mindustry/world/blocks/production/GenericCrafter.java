@@ -31,6 +31,7 @@ public class GenericCrafter extends Block{
     public GenericCrafter(String name){
         super(name);
         update = true;
+        parallelUpdate = true;
         solid = true;
         hasItems = true;
         health = 60;
@@ -86,20 +87,30 @@ public class GenericCrafter extends Block{
 
     @Override
     public void update(Tile tile){
+        updateCompute(tile);
+        updateCommit(tile);
+    }
+
+    @Override
+    public void updateCompute(Tile tile){
         GenericCrafterEntity entity = tile.ent();
 
         if(entity.cons.valid()){
-
             entity.progress += getProgressIncrease(entity, craftTime);
             entity.totalProgress += entity.delta();
             entity.warmup = Mathf.lerpDelta(entity.warmup, 1f, 0.02f);
-
-            if(Mathf.chance(Time.delta() * updateEffectChance)){
-                Effects.effect(updateEffect, entity.x + Mathf.range(size * 4f), entity.y + Mathf.range(size * 4));
-            }
         }else{
             entity.warmup = Mathf.lerp(entity.warmup, 0f, 0.02f);
         }
+    }
+
+    @Override
+    public void updateCommit(Tile tile){
+        GenericCrafterEntity entity = tile.ent();
+
+        if(entity.cons.valid() && Mathf.chance(Time.delta() * updateEffectChance)){
+            Effects.effect(updateEffect, entity.x + Mathf.range(size * 4f), entity.y + Mathf.range(size * 4));
+        }
 
         if(entity.progress >= 1f){
             entity.cons.trigger();
@@ -127,6 +138,15 @@ public class GenericCrafter extends Block{
         if(outputLiquid != null){
             tryDumpLiquid(tile, outputLiquid.liquid);
         }
+
+        //with inputs missing and nothing left to output, only an incoming item or liquid can change anything
+        if(entity.cons.starved() && entity.warmup <= 0.01f
+            && (outputItem == null || entity.items.get(outputItem.item) == 0)
+            && (outputLiquid == null || entity.liquids.get(outputLiquid.liquid) <= 0.001f)){
+            entity.sleep();
+        }else{
+            entity.noSleep();
+        }
     }
 
     @Override
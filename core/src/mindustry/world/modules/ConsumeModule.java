@@ -2,11 +2,12 @@ package mindustry.world.modules;
 
 import mindustry.entities.type.TileEntity;
 import mindustry.world.consumers.Consume;
+import mindustry.world.consumers.ConsumeType;
 
 import java.io.*;
 
 public class ConsumeModule extends BlockModule{
-    private boolean valid, optionalValid;
+    private boolean valid, optionalValid, starved;
     private final TileEntity entity;
 
     public ConsumeModule(TileEntity entity){
@@ -17,12 +18,14 @@ public class ConsumeModule extends BlockModule{
         //everything is valid here
         if(entity.tile.isEnemyCheat()){
             valid = optionalValid = true;
+            starved = false;
             return;
         }
 
         boolean prevValid = valid();
         valid = true;
         optionalValid = true;
+        starved = false;
         boolean docons = entity.block.shouldConsume(entity.tile) && entity.block.productionValid(entity.tile);
 
         for(Consume cons : entity.block.consumes.all()){
@@ -32,7 +35,9 @@ public class ConsumeModule extends BlockModule{
                 cons.update(entity);
             }
 
-            valid &= cons.valid(entity);
+            boolean consValid = cons.valid(entity);
+            valid &= consValid;
+            starved |= !consValid && cons.type() != ConsumeType.power;
         }
 
         for(Consume cons : entity.block.consumes.optionals()){
@@ -58,6 +63,11 @@ public class ConsumeModule extends BlockModule{
         return valid() && optionalValid;
     }
 
+    /** @return whether a required item or liquid is missing. This can only change when something is handed to the entity. */
+    public boolean starved(){
+        return starved;
+    }
+
     @Override
     public void write(DataOutput stream) throws IOException{
         stream.writeBoolean(valid);
@@ -12,6 +12,7 @@ import arc.util.Timer.*;
 import arc.util.serialization.*;
 import arc.util.serialization.JsonValue.*;
 import mindustry.*;
+import mindustry.ai.Pathfinder.*;
 import mindustry.core.GameState.*;
 import mindustry.core.*;
 import mindustry.entities.*;
@@ -52,6 +53,9 @@ public class ServerControl implements ApplicationListener{
     private Task lastTask;
     private Gamemode lastMode = Gamemode.survival;
     private @Nullable Map nextMapOverride;
+    /** Parsed global rules, and the setting they were parsed from. */
+    private @Nullable JsonValue globalRules;
+    private @Nullable String globalRulesSource;
 
     private Thread socketThread;
     private ServerSocket serverSocket;
@@ -165,8 +169,13 @@ public class ServerControl implements ApplicationListener{
 
         Events.on(PlayEvent.class, e -> {
             try{
-                JsonValue value = JsonIO.json().fromJson(null, Core.settings.getString("globalrules"));
-                JsonIO.json().readFields(state.rules, value);
+                //only parse the rules again when they are changed
+                String source = Core.settings.getString("globalrules");
+                if(!source.equals(globalRulesSource)){
+                    globalRules = JsonIO.json().fromJson(null, source);
+                    globalRulesSource = source;
+                }
+                JsonIO.json().readFields(state.rules, globalRules);
             }catch(Throwable t){
                 Log.err("Error applying custom rules, proceeding without them.", t);
             }
@@ -293,11 +302,31 @@ public class ServerControl implements ApplicationListener{
                 }
 
                 info("  &ly{0} FPS, {1} MB used.", Core.graphics.getFramesPerSecond(), Core.app.getJavaHeap() / 1024 / 1024);
+                info("  &lyWorld data cache: {0} hits, {1} misses.", netServer.worldDataHits, netServer.worldDataMisses);
+
+                int fields = 0;
+                long slowest = 0;
+                for(Team team : Team.all()){
+                    for(PathTarget target : PathTarget.all){
+                        long time = pathfinder.updateTime(team, target);
+                        if(time >= 0){
+                            fields++;
+                            slowest = Math.max(slowest, time);
+                        }
+                    }
+                }
+                if(fields > 0){
+                    info("  &lyPathfinding: {0} flow fields, slowest update took {1} ms.", fields, Strings.fixed(slowest / 1000000f, 2));
+                }
 
                 if(playerGroup.size() > 0){
                     info("  &lyPlayers: {0}", playerGroup.size());
                     for(Player p : playerGroup.all()){
-                        info("    &y{0} / {1}", p.name, p.uuid);
+                        if(p.con != null){
+                            info("    &y{0} / {1} &lb(queued packets: {2}, peak {3})", p.name, p.uuid, p.con.queuedPackets(), p.con.peakQueuedPackets);
+                        }else{
+                            info("    &y{0} / {1}", p.name, p.uuid);
+                        }
                     }
                 }else{
                     info("  &lyNo players connected.");
@@ -349,6 +378,7 @@ public class ServerControl implements ApplicationListener{
         handler.register("difficulty", "<difficulty>", "Set game difficulty.", arg -> {
             try{
                 state.rules.waveSpacing = Difficulty.valueOf(arg[0]).waveTime * 60 * 60 * 2;
+                world.modified();
                 info("Difficulty set to '{0}'.", arg[0]);
             }catch(IllegalArgumentException e){
                 err("No difficulty with name '{0}' found.", arg[0]);
@@ -403,6 +433,7 @@ public class ServerControl implements ApplicationListener{
                 }
 
                 Core.settings.putSave("globalrules", base.toString());
+                world.modified();
                 Call.onSetRules(state.rules);
             }
         });
@@ -491,7 +522,7 @@ public class ServerControl implements ApplicationListener{
             }
         });
 
-        handler.register("subnet-ban", "[add/remove] [address]", "Ban a subnet. This simply rejects all connections with IPs starting with some string.", arg -> {
+        handler.register("subnet-ban", "[add/remove] [address]", "Ban a subnet. This rejects all connections with IPs in a CIDR range (such as 10.0.0.0/8), or starting with some string.", arg -> {
             if(arg.length == 0){
                 Log.info("Subnets banned: &lc{0}", netServer.admins.getSubnetBans().isEmpty() ? "<none>" : "");
                 for(String subnet : netServer.admins.getSubnetBans()){
@@ -665,6 +696,7 @@ public class ServerControl implements ApplicationListener{
             
             if(info != null){
                 info.lastKicked = 0;
+                netServer.admins.modified(info);
                 info("Pardoned player: {0}", info.lastName);
             }else{
                 err("That ID can't be found.");
@@ -757,6 +789,7 @@ public class ServerControl implements ApplicationListener{
                 try{
                     SaveIO.load(file);
                     state.rules.zone = null;
+                    world.modified();
                     info("Save loaded.");
                     state.set(State.playing);
                     netServer.openServer();
@@ -774,10 +807,13 @@ public class ServerControl implements ApplicationListener{
 
             Fi file = saveDirectory.child(arg[0] + "." + saveExtension);
 
-            Core.app.post(() -> {
-                SaveIO.save(file);
-                info("Saved to {0}.", file);
-            });
+            Core.app.post(() -> SaveIO.saveAsync(file, (success, snapshotTime, writeTime) -> {
+                if(success){
+                    info("Saved to {0} in {1}ms, of which {2}ms blocked the server.", file, snapshotTime + writeTime, snapshotTime);
+                }else{
+                    err("Failed to save to {0}.", file);
+                }
+            }));
         });
 
         handler.register("saves", "List all saves in the save directory.", arg -> {
@@ -0,0 +1,83 @@
+package power;
+
+import mindustry.world.*;
+import mindustry.world.blocks.power.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Measures the cost of updating a large power graph once, with and without {@link PowerGraph#incremental running totals}.
+ * Each member of a graph reports its changes when its own entity updates, which happens whether or not the graph uses them,
+ * so only the members that changed are refreshed here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PowerGraphBenchmark extends PowerTestFixture{
+    @Param({"100", "1000", "10000"})
+    int size;
+    @Param({"false", "true"})
+    boolean incremental;
+
+    PowerGraph graph;
+    /** Producers of the graph, which take turns changing their production. */
+    Tile[] producers;
+    int frame;
+
+    @Setup
+    public void setup(){
+        initializeDependencies();
+        PowerGraph.incremental = incremental;
+
+        //a third of the graph each: producers, consumers and batteries, with more power produced than needed
+        Block producer = createFakeProducerBlock(2f);
+        Block consumer = createFakeDirectConsumer(1f);
+        Block battery = createFakeBattery(100f);
+
+        graph = new PowerGraph();
+        producers = new Tile[(size + 2) / 3];
+        for(int i = 0; i < size; i++){
+            Tile tile;
+            if(i % 3 == 0){
+                tile = createFakeTile(i % 256, i / 256, producer);
+                tile.<PowerGenerator.GeneratorEntity>ent().productionEfficiency = 1f;
+                producers[i / 3] = tile;
+            }else{
+                tile = createFakeTile(i % 256, i / 256, i % 3 == 1 ? consumer : battery);
+            }
+            graph.add(tile);
+        }
+
+        //fill the batteries
+        for(int i = 0; i < 1000; i++){
+            graph.update();
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        PowerGraph.incremental = false;
+    }
+
+    /** An update where no member changed. */
+    @Benchmark
+    public float steady(){
+        graph.update();
+        return graph.getLastPowerProduced();
+    }
+
+    /** An update after one producer changed its production. */
+    @Benchmark
+    public float oneChange(){
+        Tile tile = producers[frame++ % producers.length];
+        PowerGenerator.GeneratorEntity entity = tile.ent();
+        entity.productionEfficiency = entity.productionEfficiency == 1f ? 0.5f : 1f;
+        graph.refresh(tile);
+        graph.update();
+        return graph.getLastPowerProduced();
+    }
+}
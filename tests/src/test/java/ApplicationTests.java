@@ -214,6 +214,31 @@ public class ApplicationTests{
         assertTrue(state.teams.playerCores().size > 0);
     }
 
+    @Test
+    void worldDataSharedAcrossFrames(){
+        world.loadMap(testMap);
+        state.set(State.playing);
+
+        int misses = netServer.worldDataMisses, hits = netServer.worldDataHits;
+        netServer.packWorldData();
+
+        //a few frames pass before the next player joins
+        for(int i = 0; i < 5; i++){
+            Time.update();
+            unitGroup.update();
+            tileGroup.update();
+        }
+
+        netServer.packWorldData();
+        assertEquals(misses + 1, netServer.worldDataMisses);
+        assertEquals(hits + 1, netServer.worldDataHits);
+
+        //changing a tile outdates the data
+        world.tile(1, 1).setBlock(Blocks.copperWall, Team.sharded);
+        netServer.packWorldData();
+        assertEquals(misses + 2, netServer.worldDataMisses);
+    }
+
     @Test
     void conveyorCrash(){
         world.loadMap(testMap);
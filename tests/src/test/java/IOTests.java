@@ -49,6 +49,31 @@ public class IOTests{
         assertEquals(rules.attackMode, res.attackMode);
     }
 
+    @Test
+    void writeRulesBinary(){
+        Rules rules = new Rules();
+        rules.pvp = true;
+        rules.respawns = 12;
+        rules.waveTeam = Team.blue;
+        rules.ambientLight.set(0.5f, 0.25f, 0.125f, 1f);
+        rules.tags.put("blah", "bleh");
+        rules.spawns.add(new SpawnGroup(){{
+            begin = 4;
+            unitScaling = 2.5f;
+        }});
+
+        Rules res = RulesIO.read(RulesIO.write(rules));
+
+        assertTrue(res.pvp);
+        assertEquals(rules.respawns, res.respawns);
+        assertEquals(rules.waveTeam, res.waveTeam);
+        assertEquals(rules.ambientLight, res.ambientLight);
+        assertEquals(rules.tags.get("blah"), res.tags.get("blah"));
+        assertEquals(1, res.spawns.size);
+        assertEquals(4, res.spawns.first().begin);
+        assertEquals(2.5f, res.spawns.first().unitScaling);
+    }
+
     @Test
     void writeRules2(){
         Rules rules = new Rules();
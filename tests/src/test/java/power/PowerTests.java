@@ -2,10 +2,12 @@ package power;
 
 import arc.*;
 import arc.math.*;
+import arc.struct.*;
 import arc.util.*;
 import mindustry.*;
 import mindustry.core.*;
 import mindustry.world.*;
+import mindustry.world.blocks.*;
 import mindustry.world.blocks.power.*;
 import mindustry.world.consumers.*;
 import org.junit.jupiter.api.*;
@@ -139,5 +141,200 @@ public class PowerTests extends PowerTestFixture{
                 assertFalse(consumePower.valid(consumerTile.ent()));
             }
         }
+
+        /** Makes sure battery totals are kept up to date as batteries are added and removed. */
+        @Test
+        void batteryTotalsFollowMembers(){
+            PowerGraph powerGraph = new PowerGraph();
+            Tile[] batteries = new Tile[10];
+            for(int i = 0; i < batteries.length; i++){
+                batteries[i] = createFakeTile(i, 0, createFakeBattery(10f * (i + 1)));
+                batteries[i].entity.power.status = 0.5f;
+                powerGraph.add(batteries[i]);
+            }
+            //adding a tile twice must not count it twice
+            powerGraph.add(batteries[0]);
+
+            assertEquals(10, powerGraph.batteries.size());
+            assertEquals(550f, powerGraph.getTotalBatteryCapacity(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(275f, powerGraph.getBatteryStored(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(275f, powerGraph.getBatteryCapacity(), Mathf.FLOAT_ROUNDING_ERROR);
+
+            for(int i = 0; i < batteries.length; i += 2){
+                powerGraph.remove(batteries[i]);
+            }
+
+            assertEquals(5, powerGraph.batteries.size());
+            assertEquals(300f, powerGraph.getTotalBatteryCapacity(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(150f, powerGraph.getBatteryStored(), Mathf.FLOAT_ROUNDING_ERROR);
+            for(int i = 0; i < batteries.length; i++){
+                assertEquals(i % 2 == 1, powerGraph.batteries.contains(batteries[i]));
+            }
+        }
+
+        /** Makes sure keeping running totals gives the same results as summing all members, as members change and are removed. */
+        @Test
+        void incrementalTotalsMatchFullUpdate(){
+            Tile[] full = createMixedGraph();
+            Tile[] incremental = createMixedGraph();
+
+            try{
+                for(int i = 0; i < 20; i++){
+                    if(i == 5){
+                        full[0].<PowerGenerator.GeneratorEntity>ent().productionEfficiency = 0.25f;
+                        incremental[0].<PowerGenerator.GeneratorEntity>ent().productionEfficiency = 0.25f;
+                    }else if(i == 8){
+                        //blocks may set the status of batteries directly
+                        full[3].entity.power.status = 1f;
+                        incremental[3].entity.power.status = 1f;
+                    }else if(i == 12){
+                        full[0].entity.power.graph.remove(full[0]);
+                        incremental[0].entity.power.graph.remove(incremental[0]);
+                    }
+
+                    PowerGraph.incremental = false;
+                    updateMembers(full);
+                    PowerGraph.incremental = true;
+                    updateMembers(incremental);
+
+                    PowerGraph fullGraph = full[1].entity.power.graph, incrementalGraph = incremental[1].entity.power.graph;
+                    assertEquals(fullGraph.getLastPowerProduced(), incrementalGraph.getLastPowerProduced(), Mathf.FLOAT_ROUNDING_ERROR, "Power produced differs in update " + i);
+                    assertEquals(fullGraph.getLastPowerNeeded(), incrementalGraph.getLastPowerNeeded(), Mathf.FLOAT_ROUNDING_ERROR, "Power needed differs in update " + i);
+                    assertEquals(fullGraph.getBatteryStored(), incrementalGraph.getBatteryStored(), Mathf.FLOAT_ROUNDING_ERROR, "Stored power differs in update " + i);
+                    for(int j = 1; j < full.length; j++){
+                        assertEquals(full[j].entity.power.status, incremental[j].entity.power.status, Mathf.FLOAT_ROUNDING_ERROR, "Status of member " + j + " differs in update " + i);
+                    }
+                }
+            }finally{
+                PowerGraph.incremental = false;
+            }
+        }
+
+        /** Creates a graph with a producer, two direct consumers, a half full battery and a buffered consumer, in that order. */
+        Tile[] createMixedGraph(){
+            Tile[] tiles = {
+                createFakeTile(0, 0, createFakeProducerBlock(10f)),
+                createFakeTile(1, 0, createFakeDirectConsumer(4f)),
+                createFakeTile(2, 0, createFakeDirectConsumer(3f)),
+                createFakeTile(3, 0, createFakeBattery(100f)),
+                createFakeTile(4, 0, new PowerBlock("fakebufferedconsumer"){{
+                    consumes.powerBuffered(20f);
+                }})
+            };
+            tiles[0].<PowerGenerator.GeneratorEntity>ent().productionEfficiency = 1f;
+            tiles[3].entity.power.status = 0.5f;
+
+            PowerGraph graph = new PowerGraph();
+            for(Tile tile : tiles){
+                graph.add(tile);
+            }
+            return tiles;
+        }
+
+        /** Updates each member of a graph like a tile entity does, which updates the graph itself once per frame. */
+        void updateMembers(Tile[] tiles){
+            PowerGraph graph = tiles[1].entity.power.graph;
+            for(Tile tile : tiles){
+                graph.refresh(tile);
+            }
+            graph.update();
+        }
+
+        /** Makes sure removing a tile from a line splits off the shorter side, and keeps the longer one in the original graph. */
+        @Test
+        void splitKeepsLargerSide(){
+            Tile[] line = createBatteryGrid(10, 1)[0];
+            PowerGraph graph = line[0].entity.power.graph;
+            assertEquals(10, graph.all.size);
+
+            removeTile(line[2]);
+
+            assertSame(graph, line[9].entity.power.graph);
+            assertEquals(7, graph.all.size);
+            assertNotSame(graph, line[0].entity.power.graph);
+            assertSame(line[0].entity.power.graph, line[1].entity.power.graph);
+            assertEquals(2, line[0].entity.power.graph.all.size);
+            assertFalse(graph.all.contains(line[2]));
+        }
+
+        /** Deconstructs a grid of batteries tile by tile, and makes sure every graph is exactly one connected component after each removal. */
+        @Test
+        void massDeconstructionSplitsGraphs(){
+            int size = 12;
+            Tile[][] grid = createBatteryGrid(size, size);
+            assertEquals(size * size, grid[0][0].entity.power.graph.all.size);
+
+            //remove tiles in a scattered order, so that the grid is split in many different ways
+            for(int i = 0; i < size * size; i++){
+                int index = (i * 37) % (size * size);
+                removeTile(grid[index % size][index / size]);
+                grid[index % size][index / size] = null;
+
+                ObjectSet<Tile> checked = new ObjectSet<>();
+                for(Tile[] column : grid){
+                    for(Tile tile : column){
+                        if(tile == null || checked.contains(tile)) continue;
+
+                        //find the component of this tile
+                        Array<Tile> component = new Array<>();
+                        Queue<Tile> queue = new Queue<>();
+                        queue.addLast(tile);
+                        checked.add(tile);
+                        while(queue.size > 0){
+                            Tile child = queue.removeFirst();
+                            component.add(child);
+                            for(Tile next : child.entity.proximity){
+                                if(checked.add(next)){
+                                    queue.addLast(next);
+                                }
+                            }
+                        }
+
+                        PowerGraph graph = tile.entity.power.graph;
+                        assertEquals(component.size, graph.all.size, "Graph size does not match component size after " + (i + 1) + " removals");
+                        assertEquals(component.size, graph.batteries.size());
+                        assertEquals(component.size * 10f, graph.getTotalBatteryCapacity(), 0.01f);
+                        for(Tile member : component){
+                            assertSame(graph, member.entity.power.graph);
+                            assertTrue(graph.all.contains(member));
+                        }
+                    }
+                }
+            }
+        }
+
+        /** Creates a grid of batteries connected to their direct neighbors, merged the same way blocks merge their graphs when placed. */
+        Tile[][] createBatteryGrid(int width, int height){
+            Block battery = createFakeBattery(10f);
+            Tile[][] grid = new Tile[width][height];
+            for(int x = 0; x < width; x++){
+                for(int y = 0; y < height; y++){
+                    grid[x][y] = createFakeTile(x, y, battery);
+                }
+            }
+
+            for(int x = 0; x < width; x++){
+                for(int y = 0; y < height; y++){
+                    if(x > 0) connect(grid[x][y], grid[x - 1][y]);
+                    if(y > 0) connect(grid[x][y], grid[x][y - 1]);
+                }
+            }
+            return grid;
+        }
+
+        void connect(Tile a, Tile b){
+            a.entity.proximity.add(b);
+            b.entity.proximity.add(a);
+            a.entity.power.graph.add(b.entity.power.graph);
+        }
+
+        /** Removes a tile from its graph and from the proximity of its neighbors, like deconstructing it would. */
+        void removeTile(Tile tile){
+            tile.entity.power.graph.remove(tile);
+            for(Tile other : tile.entity.proximity){
+                other.entity.proximity.remove(tile, true);
+            }
+            tile.entity.proximity.clear();
+        }
     }
 }